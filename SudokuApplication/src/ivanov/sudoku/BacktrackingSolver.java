@@ -0,0 +1,300 @@
+package ivanov.sudoku;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A backtracking Sudoku search that works with an explicit stack instead of
+ * recursion. All the state of the search (the board, the trail of placed
+ * numbers and the remaining candidates of every level) lives in arrays
+ * allocated once per instance, so the search itself does not allocate anything
+ * on the heap.<br />
+ * Before branching, every node places all naked singles (cells with one
+ * candidate) and hidden singles (numbers with one possible cell in a row,
+ * column or block). The search then branches on the empty cell with the
+ * fewest candidates.<br />
+ * Instances are not thread safe, {@link SolverFactory#get()} returns the
+ * solver of the calling thread.<br />
+ * Boards of any supported box size can be solved, the workspace is sized for
+ * the box size of the last board and only reallocated when it changes.
+ *
+ */
+public class BacktrackingSolver implements Solver {
+	private int size; // Numbers, and cells per row.
+	private int all; // Mask with all numbers set.
+	private int[][] units; // Cells of every row, column and block.
+	private int[] cells; // Board being searched.
+	private int[] trail; // Positions placed, in order.
+	private int[] branches; // Branch position per level.
+	private int[] remaining; // Untried candidates per level.
+	private int[] trailStart; // Trail size per level.
+	private int[] allowed; // Numbers not excluded.
+	private ConstraintModel model;
+	private int trailSize;
+	private long budget = Long.MAX_VALUE; // Search nodes left.
+
+	public BacktrackingSolver() {
+		resize(Board.BOX_SIZE);
+	}
+
+	@Override
+	public boolean solve(Board game, Random random) {
+		if (!load(game) || search(random, 1) == 0)
+			return false;
+		for (int position = 0; position < cells.length; position++) {
+			game.set(position, cells[position]);
+		}
+		return true;
+	}
+
+	@Override
+	public int countSolutions(Board game, int limit) {
+		if (!load(game))
+			return 0;
+		return search(null, limit);
+	}
+
+	@Override
+	public boolean hasSolutionWithout(Board game, int position, int number) {
+		return hasSolutionWithout(game, position, number, Long.MAX_VALUE);
+	}
+
+	@Override
+	public boolean hasSolutionWithout(Board game, int position, int number,
+			long budget) {
+		if (!load(game))
+			return false;
+		allowed[position] = all & ~ConstraintModel.bit(number);
+		this.budget = budget;
+		try {
+			return search(null, 1) != 0;
+		} finally {
+			allowed[position] = all;
+			this.budget = Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Copies given game into the workspace.
+	 *
+	 * @return False if the numbers of the game already contradict each other.
+	 */
+	private boolean load(Board game) {
+		if (game.getBoxSize() != model.getBoxSize())
+			resize(game.getBoxSize());
+		model.clear();
+		trailSize = 0;
+		for (int position = 0; position < cells.length; position++) {
+			int number = game.get(position);
+			cells[position] = number;
+			if (number == 0) {
+				continue;
+			} else if ((model.getCandidates(position) & ConstraintModel
+					.bit(number)) != 0) {
+				model.place(position, number);
+			} else {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Allocates the workspace for boards of given box size.
+	 */
+	private void resize(int boxSize) {
+		model = new ConstraintModel(boxSize);
+		size = boxSize * boxSize;
+		all = model.getAll();
+		units = createUnits(boxSize);
+		int count = size * size;
+		cells = new int[count];
+		trail = new int[count];
+		branches = new int[count];
+		remaining = new int[count];
+		trailStart = new int[count];
+		allowed = new int[count];
+		Arrays.fill(allowed, all);
+	}
+
+	/**
+	 * Runs the search over the empty cells of the workspace. When the limit is
+	 * reached the cells hold the last solution found.
+	 *
+	 * @param random
+	 *            Source of the candidate order, null for ascending order.
+	 * @param limit
+	 *            Number of solutions after which the search stops.
+	 * @return Number of solutions found, at most limit, or -1 if the search
+	 *         ran out of its budget of nodes.
+	 */
+	private int search(Random random, int limit) {
+		int solutions = 0;
+		int depth = 0;
+		boolean entering = true;
+		while (true) {
+			if (entering && --budget < 0)
+				return -1;
+			if (entering && propagate()) {
+				int position = chooseCell();
+				if (position < 0) {
+					if (++solutions >= limit)
+						return solutions;
+				} else {
+					branches[depth] = position;
+					remaining[depth] = candidates(position);
+					trailStart[depth] = trailSize;
+					depth++;
+				}
+			}
+			if (depth == 0)
+				return solutions;
+			int level = depth - 1;
+			undo(trailStart[level]);
+			int candidates = remaining[level];
+			if (candidates == 0) {
+				depth--;
+				entering = false;
+				continue;
+			}
+			int bit = random == null ? candidates & -candidates : pick(
+					candidates, random);
+			remaining[level] = candidates & ~bit;
+			place(branches[level], ConstraintModel.lowest(bit));
+			entering = true;
+		}
+	}
+
+	/**
+	 * Places naked and hidden singles until none are left.
+	 *
+	 * @return False if a cell or a number of a unit ran out of candidates.
+	 */
+	private boolean propagate() {
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int position = 0; position < cells.length; position++) {
+				if (cells[position] != 0)
+					continue;
+				int candidates = candidates(position);
+				if (candidates == 0)
+					return false;
+				if ((candidates & (candidates - 1)) == 0) {
+					place(position, ConstraintModel.lowest(candidates));
+					changed = true;
+				}
+			}
+			for (int[] unit : units) {
+				int once = 0;
+				int twice = 0;
+				int placed = 0;
+				for (int position : unit) {
+					if (cells[position] != 0) {
+						placed |= ConstraintModel.bit(cells[position]);
+					} else {
+						int candidates = candidates(position);
+						twice |= once & candidates;
+						once |= candidates;
+					}
+				}
+				if ((once | placed) != all)
+					return false;
+				for (int hidden = once & ~twice; hidden != 0; hidden &= hidden - 1) {
+					int bit = hidden & -hidden;
+					int position = find(unit, bit);
+					if (position < 0)
+						return false;
+					place(position, ConstraintModel.lowest(bit));
+					changed = true;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the empty cell with the fewest candidates or -1 when the board
+	 * is full.
+	 */
+	private int chooseCell() {
+		int best = -1;
+		int bestCount = size + 1;
+		for (int position = 0; position < cells.length; position++) {
+			if (cells[position] != 0)
+				continue;
+			int count = ConstraintModel.count(candidates(position));
+			if (count < bestCount) {
+				best = position;
+				bestCount = count;
+				if (count <= 2)
+					break;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the empty cell of the unit which still has given candidate, or
+	 * -1 if there is none.
+	 */
+	private int find(int[] unit, int bit) {
+		for (int position : unit) {
+			if (cells[position] == 0 && (candidates(position) & bit) != 0)
+				return position;
+		}
+		return -1;
+	}
+
+	private int candidates(int position) {
+		return model.getCandidates(position) & allowed[position];
+	}
+
+	/**
+	 * Places a number and records it on the trail.
+	 */
+	private void place(int position, int number) {
+		cells[position] = number;
+		model.place(position, number);
+		trail[trailSize++] = position;
+	}
+
+	/**
+	 * Removes the numbers placed since the trail had given size.
+	 */
+	private void undo(int size) {
+		while (trailSize > size) {
+			int position = trail[--trailSize];
+			model.unplace(position, cells[position]);
+			cells[position] = 0;
+		}
+	}
+
+	/**
+	 * Returns a random bit of given non-empty mask.
+	 */
+	private static int pick(int candidates, Random random) {
+		for (int skip = random.nextInt(ConstraintModel.count(candidates)); skip > 0; skip--) {
+			candidates &= candidates - 1;
+		}
+		return candidates & -candidates;
+	}
+
+	/**
+	 * Creates the positions of the rows, columns and blocks of a board of
+	 * given box size.
+	 */
+	private static int[][] createUnits(int boxSize) {
+		int size = boxSize * boxSize;
+		int[][] units = new int[3 * size][size];
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				units[i][j] = i * size + j;
+				units[size + i][j] = j * size + i;
+				units[2 * size + i][j] = ((i / boxSize) * boxSize + j / boxSize)
+						* size + (i % boxSize) * boxSize + j % boxSize;
+			}
+		}
+		return units;
+	}
+}
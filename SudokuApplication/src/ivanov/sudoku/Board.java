@@ -0,0 +1,285 @@
+package ivanov.sudoku;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A flat Sudoku board of N² x N² cells, where N is the box size: 3 for
+ * the standard 9x9 board, 4 for 16x16 and 5 for 25x25. The cells are stored
+ * in row order in a byte array (0 for an empty cell) and the cells given by
+ * the game, as opposed to filled in by the user, are kept as a bit mask in an
+ * array of longs. Copying, comparing and hashing a board only touches these
+ * arrays. Boards are saved with {@link SaveFormat}, they are not
+ * serializable.
+ *
+ */
+public final class Board {
+	/** Box size of the standard board. */
+	public static final int BOX_SIZE = 3;
+	/** Largest supported box size, the numbers must fit the 32-bit masks. */
+	public static final int MAX_BOX_SIZE = 5;
+	/** Number of cells of a standard board. */
+	public static final int CELLS = 81;
+	/**
+	 * Number of bytes of a standard board packed by
+	 * {@link #pack(ByteBuffer, int)}.
+	 */
+	static final int PACKED_LENGTH = (CELLS + 1) / 2;
+
+	private final int boxSize;
+	private final int size; // Numbers, and cells per row.
+	private final byte[] cells;
+	private final long[] given; // Given mask, 64 cells per long.
+
+	/**
+	 * Creates an empty standard board.
+	 */
+	public Board() {
+		this(BOX_SIZE);
+	}
+
+	/**
+	 * Creates an empty board of given box size.
+	 *
+	 * @param boxSize
+	 *            Box size, from 2 to {@link #MAX_BOX_SIZE}.
+	 * @throws IllegalArgumentException
+	 *             if the box size is not supported
+	 */
+	public Board(int boxSize) {
+		if (boxSize < 2 || boxSize > MAX_BOX_SIZE)
+			throw new IllegalArgumentException("Unsupported box size: "
+					+ boxSize);
+		this.boxSize = boxSize;
+		this.size = boxSize * boxSize;
+		this.cells = new byte[this.size * this.size];
+		this.given = new long[(this.cells.length + 63) / 64];
+	}
+
+	/**
+	 * Creates a copy of given board.
+	 *
+	 * @param board
+	 *            Board to copy.
+	 */
+	public Board(Board board) {
+		this(board.boxSize);
+		copyFrom(board);
+	}
+
+	/**
+	 * Replaces the cells and the given mask of this board with those of
+	 * another board.
+	 *
+	 * @param board
+	 *            Board to copy.
+	 * @throws IllegalArgumentException
+	 *             if the boards have different sizes
+	 */
+	public void copyFrom(Board board) {
+		if (board.boxSize != this.boxSize)
+			throw new IllegalArgumentException("Boards of different sizes");
+		System.arraycopy(board.cells, 0, this.cells, 0, this.cells.length);
+		System.arraycopy(board.given, 0, this.given, 0, this.given.length);
+	}
+
+	/**
+	 * Returns the box size, 3 for a standard board.
+	 */
+	public int getBoxSize() {
+		return this.boxSize;
+	}
+
+	/**
+	 * Returns the number of cells of a row, which is also the highest number.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of cells of the board.
+	 */
+	public int getCellCount() {
+		return this.cells.length;
+	}
+
+	/**
+	 * Returns whether this is a standard 9x9 board.
+	 */
+	public boolean isStandard() {
+		return this.boxSize == BOX_SIZE;
+	}
+
+	/**
+	 * Returns the number of given cell, 0 if it is empty.
+	 *
+	 * @param index
+	 *            Index of the cell in row order.
+	 */
+	public int get(int index) {
+		return this.cells[index];
+	}
+
+	/**
+	 * Returns the number of given position, 0 if it is empty.
+	 *
+	 * @param x
+	 *            X position in board.
+	 * @param y
+	 *            Y position in board.
+	 */
+	public int get(int x, int y) {
+		return this.cells[y * this.size + x];
+	}
+
+	/**
+	 * Sets the number of given cell, 0 to clear it.
+	 *
+	 * @param index
+	 *            Index of the cell in row order.
+	 * @param number
+	 *            The number to be set.
+	 */
+	public void set(int index, int number) {
+		this.cells[index] = (byte) number;
+	}
+
+	/**
+	 * Sets the number of given position, 0 to clear it.
+	 *
+	 * @param x
+	 *            X position in board.
+	 * @param y
+	 *            Y position in board.
+	 * @param number
+	 *            The number to be set.
+	 */
+	public void set(int x, int y, int number) {
+		this.cells[y * this.size + x] = (byte) number;
+	}
+
+	/**
+	 * Returns whether given cell was given by the game.
+	 *
+	 * @param index
+	 *            Index of the cell in row order.
+	 */
+	public boolean isGiven(int index) {
+		return (this.given[index >> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Marks given cell as given by the game or as intended for user input.
+	 *
+	 * @param index
+	 *            Index of the cell in row order.
+	 * @param given
+	 *            True if the cell is given by the game.
+	 */
+	public void setGiven(int index, boolean given) {
+		if (given) {
+			this.given[index >> 6] |= 1L << index;
+		} else {
+			this.given[index >> 6] &= ~(1L << index);
+		}
+	}
+
+	/**
+	 * Marks all non-empty cells as given and all empty cells as intended for
+	 * user input.
+	 */
+	public void setGivens() {
+		Arrays.fill(this.given, 0);
+		for (int index = 0; index < this.cells.length; index++) {
+			if (this.cells[index] != 0)
+				setGiven(index, true);
+		}
+	}
+
+	/**
+	 * Returns the number of non-empty cells.
+	 */
+	public int countFilled() {
+		int count = 0;
+		for (int index = 0; index < this.cells.length; index++) {
+			if (this.cells[index] != 0)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Writes the numbers of this board two cells to a byte, the even cells in
+	 * the low half, without changing the position of the buffer. Only
+	 * standard boards can be packed.
+	 *
+	 * @param buffer
+	 *            Buffer to write to.
+	 * @param offset
+	 *            Index of the first byte in the buffer.
+	 */
+	void pack(ByteBuffer buffer, int offset) {
+		checkStandard();
+		for (int index = 0; index < CELLS; index += 2) {
+			int high = index + 1 < CELLS ? this.cells[index + 1] : 0;
+			buffer.put(offset + (index >> 1), (byte) (this.cells[index] | high << 4));
+		}
+	}
+
+	/**
+	 * Reads the numbers written by {@link #pack(ByteBuffer, int)} into this
+	 * board, without changing the position of the buffer. The given mask is
+	 * not changed.
+	 *
+	 * @param buffer
+	 *            Buffer to read from.
+	 * @param offset
+	 *            Index of the first byte in the buffer.
+	 * @return False if a number is out of range, the board is then undefined.
+	 */
+	boolean unpack(ByteBuffer buffer, int offset) {
+		checkStandard();
+		for (int index = 0; index < CELLS; index += 2) {
+			int b = buffer.get(offset + (index >> 1));
+			int low = b & 0xF;
+			int high = b >> 4 & 0xF;
+			if (low > 9 || high > 9 || (index + 1 == CELLS && high != 0))
+				return false;
+			this.cells[index] = (byte) low;
+			if (index + 1 < CELLS)
+				this.cells[index + 1] = (byte) high;
+		}
+		return true;
+	}
+
+	/**
+	 * Throws an IllegalArgumentException unless this is a standard board,
+	 * used by the features which only support 9x9 boards.
+	 */
+	void checkStandard() {
+		if (this.boxSize != BOX_SIZE)
+			throw new IllegalArgumentException("Only 9x9 boards are supported");
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+		if (!(other instanceof Board))
+			return false;
+		Board board = (Board) other;
+		return Arrays.equals(this.given, board.given)
+				&& Arrays.equals(this.cells, board.cells);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.cells) * 31 + Arrays.hashCode(this.given);
+	}
+
+	@Override
+	public String toString() {
+		return PuzzleFormat.format(this);
+	}
+}
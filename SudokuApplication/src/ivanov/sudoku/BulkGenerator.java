@@ -0,0 +1,172 @@
+package ivanov.sudoku;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates large numbers of games on all available cores. The requested
+ * range of games is split recursively on a fork-join pool; every leaf task
+ * owns its random number generator (derived from the seed and the position of
+ * the task) and every worker thread its own solver, so the workers share no
+ * mutable state apart from the sink. Games rejected by the sink are replaced,
+ * so that the sink accepts exactly the requested number.<br />
+ * The seed of a leaf is a 64 bit mix of the seed of the run and the first
+ * index of the leaf, so runs with different seeds do not share streams. A run
+ * with the same count, difficulty and seed generates the same games whatever
+ * the number of threads, as the leaves only depend on the count; they reach
+ * the sink in another order, though, so the games are only the same when the
+ * sink accepts regardless of order (e.g. it does not reject duplicates).
+ *
+ */
+public class BulkGenerator {
+	private static final int BATCH = 16; // Games generated by a leaf task.
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a generator using all available processors.
+	 */
+	public BulkGenerator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a generator using given number of worker threads.
+	 *
+	 * @param parallelism
+	 *            - the number of worker threads
+	 */
+	public BulkGenerator(int parallelism) {
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Generates games and passes them to the sink as soon as each is ready.
+	 * The call returns when all games have been generated.
+	 *
+	 * @param count
+	 *            - the number of games to generate
+	 * @param difficulty
+	 *            - the difficulty passed to the Game constructor
+	 * @param seed
+	 *            - the seed from which the generators of the tasks are derived
+	 * @param sink
+	 *            - the thread safe receiver of the games
+	 * @return the statistics of the run
+	 */
+	public Statistics generate(int count, int difficulty, long seed,
+			PuzzleSink sink) {
+		long start = System.nanoTime();
+		AtomicInteger rejected = new AtomicInteger();
+		this.pool.invoke(new GenerateTask(0, count, difficulty, seed, sink,
+				rejected));
+		return new Statistics(count, rejected.get(), System.nanoTime() - start);
+	}
+
+	/**
+	 * Stops the worker threads of the generator.
+	 */
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+
+	public int getParallelism() {
+		return this.pool.getParallelism();
+	}
+
+	/**
+	 * Generates the games in the range [from, to), splitting the range in
+	 * halves until it is small enough.
+	 *
+	 */
+	private static class GenerateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+		private final int difficulty;
+		private final long seed;
+		private final PuzzleSink sink;
+		private final AtomicInteger rejected;
+
+		private GenerateTask(int from, int to, int difficulty, long seed,
+				PuzzleSink sink, AtomicInteger rejected) {
+			this.from = from;
+			this.to = to;
+			this.difficulty = difficulty;
+			this.seed = seed;
+			this.sink = sink;
+			this.rejected = rejected;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= BATCH) {
+				Random random = new Random(mix(mix(seed) + from));
+				for (int i = from; i < to; i++) {
+					while (!sink.accept(new Game(difficulty, random))) {
+						rejected.incrementAndGet();
+					}
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new GenerateTask(from, middle, difficulty, seed, sink,
+					rejected), new GenerateTask(middle, to, difficulty, seed,
+					sink, rejected));
+		}
+	}
+
+	/**
+	 * Scrambles the bits of a value, the finalizer of SplitMix64. It is a
+	 * bijection, so distinct seeds give distinct mixes.
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+
+	/**
+	 * The number of games generated by a run, the number of games the sink
+	 * rejected and the time it took.
+	 *
+	 */
+	public static class Statistics {
+		private final int count;
+		private final int rejected;
+		private final long nanos;
+
+		private Statistics(int count, int rejected, long nanos) {
+			this.count = count;
+			this.rejected = rejected;
+			this.nanos = nanos;
+		}
+
+		public int getCount() {
+			return this.count;
+		}
+
+		public int getRejected() {
+			return this.rejected;
+		}
+
+		public long getNanos() {
+			return this.nanos;
+		}
+
+		public double getPuzzlesPerSecond() {
+			return this.nanos == 0 ? 0 : this.count * 1e9 / this.nanos;
+		}
+
+		@Override
+		public String toString() {
+			String statistics = String.format(
+					"%d puzzles in %.3f s (%.1f puzzles/s)", this.count,
+					this.nanos / 1e9, this.getPuzzlesPerSecond());
+			return this.rejected == 0 ? statistics : statistics + ", "
+					+ this.rejected + " rejected";
+		}
+	}
+}
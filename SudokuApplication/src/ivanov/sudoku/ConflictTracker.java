@@ -0,0 +1,169 @@
+package ivanov.sudoku;
+
+/**
+ * Finds the cells which break the rules of the game while the user types: a
+ * cell is in conflict when one of its peers, the other cells of its row,
+ * column and block, holds the same number.<br />
+ * Every row, column and block keeps a counter per number, so a change tells
+ * in constant time whether a number is duplicated in the units of the cell.
+ * Only then the peers of the cell are visited, 20 on a standard board, to
+ * update the number of conflicts of each cell. A change never looks at the
+ * rest of the board, and the number of cells in conflict is known at any
+ * time.
+ *
+ */
+public class ConflictTracker {
+	private final int size;
+	private final int[] numbers; // Number of every cell, 0 if empty.
+	private final int[] counts; // Per unit and number: rows, columns, blocks.
+	private final int[] conflicts; // Peers holding the number of every cell.
+	private final int[][] units; // Row, column and block unit of every cell.
+	private final int[][] peers; // Distinct peers of every cell.
+	private int conflicting; // Cells with conflicts.
+	private int filled;
+
+	/**
+	 * Creates a tracker of an empty board of given box size.
+	 *
+	 * @param boxSize
+	 *            - the box size, see {@link Board#getBoxSize()}
+	 */
+	public ConflictTracker(int boxSize) {
+		this.size = boxSize * boxSize;
+		int cells = this.size * this.size;
+		this.numbers = new int[cells];
+		this.counts = new int[3 * this.size * this.size];
+		this.conflicts = new int[cells];
+		this.units = new int[cells][3];
+		this.peers = new int[cells][];
+		int peerCount = 2 * (this.size - 1) + (boxSize - 1) * (boxSize - 1);
+		for (int position = 0; position < cells; position++) {
+			int x = position % this.size;
+			int y = position / this.size;
+			int block = (y / boxSize) * boxSize + x / boxSize;
+			this.units[position][0] = y;
+			this.units[position][1] = this.size + x;
+			this.units[position][2] = 2 * this.size + block;
+			int[] cellPeers = new int[peerCount];
+			int count = 0;
+			for (int other = 0; other < cells; other++) {
+				int otherX = other % this.size;
+				int otherY = other / this.size;
+				if (other != position
+						&& (otherX == x || otherY == y || (otherY / boxSize)
+								* boxSize + otherX / boxSize == block))
+					cellPeers[count++] = other;
+			}
+			this.peers[position] = cellPeers;
+		}
+	}
+
+	/**
+	 * Changes the number of a cell and updates the conflicts of the cell and
+	 * its peers.
+	 *
+	 * @param position
+	 *            - the index of the cell in row order
+	 * @param number
+	 *            - the new number of the cell, 0 to empty it
+	 * @param changed
+	 *            - receives the cells which came into or out of conflict, may
+	 *            be null; it must have room for {@link #getMaxChanged()} cells
+	 * @return the number of cells written to changed
+	 */
+	public int set(int position, int number, int[] changed) {
+		int old = this.numbers[position];
+		if (old == number)
+			return 0;
+		boolean wasConflict = this.conflicts[position] > 0;
+		int count = 0;
+		int[] cellUnits = this.units[position];
+		if (old != 0) {
+			if (this.isDuplicated(cellUnits, old)) {
+				for (int peer : this.peers[position]) {
+					if (this.numbers[peer] == old
+							&& --this.conflicts[peer] == 0) {
+						this.conflicting--;
+						count = add(changed, count, peer);
+					}
+				}
+				this.conflicts[position] = 0;
+			}
+			for (int unit : cellUnits) {
+				this.counts[unit * this.size + old - 1]--;
+			}
+			this.filled--;
+		}
+		this.numbers[position] = number;
+		if (number != 0) {
+			for (int unit : cellUnits) {
+				this.counts[unit * this.size + number - 1]++;
+			}
+			this.filled++;
+			if (this.isDuplicated(cellUnits, number)) {
+				for (int peer : this.peers[position]) {
+					if (this.numbers[peer] == number) {
+						if (this.conflicts[peer]++ == 0) {
+							this.conflicting++;
+							count = add(changed, count, peer);
+						}
+						this.conflicts[position]++;
+					}
+				}
+			}
+		}
+		boolean isConflict = this.conflicts[position] > 0;
+		if (isConflict != wasConflict) {
+			this.conflicting += isConflict ? 1 : -1;
+			count = add(changed, count, position);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns whether a peer of given cell holds the same number.
+	 */
+	public boolean isConflict(int position) {
+		return this.conflicts[position] > 0;
+	}
+
+	/**
+	 * Returns the number of cells in conflict.
+	 */
+	public int getConflictCount() {
+		return this.conflicting;
+	}
+
+	/**
+	 * Returns the number of filled cells.
+	 */
+	public int getFilledCount() {
+		return this.filled;
+	}
+
+	/**
+	 * Returns the most cells a single change can bring into or out of
+	 * conflict: the cell and all its peers.
+	 */
+	public int getMaxChanged() {
+		return this.peers[0].length + 1;
+	}
+
+	/**
+	 * Returns whether given number is used more than once in a unit of a
+	 * cell.
+	 */
+	private boolean isDuplicated(int[] cellUnits, int number) {
+		for (int unit : cellUnits) {
+			if (this.counts[unit * this.size + number - 1] > 1)
+				return true;
+		}
+		return false;
+	}
+
+	private static int add(int[] changed, int count, int position) {
+		if (changed != null)
+			changed[count] = position;
+		return count + 1;
+	}
+}
@@ -0,0 +1,241 @@
+package ivanov.sudoku;
+
+/**
+ * Keeps track of the numbers already used in every row, column and block of a
+ * Sudoku board. Each unit is stored as a mask of one bit per number (9 bits on
+ * a standard board, up to 25 for a box size of 5) where bit (n - 1) is set
+ * when the number n is used in that unit, so checking a candidate is a single
+ * AND and the candidates of a cell are the complement of three masks.<br />
+ * The masks are updated incrementally by {@link #place(int, int, int)} and
+ * {@link #unplace(int, int, int)}, which keeps them in step with the board
+ * during backtracking.
+ *
+ */
+public class ConstraintModel {
+	/** Mask with all nine numbers of a standard board set. */
+	public static final int ALL = 0x1FF;
+
+	private final int boxSize;
+	private final int all; // Mask with all numbers set.
+	private final int[] rows; // Used numbers per row.
+	private final int[] columns; // Used numbers per column.
+	private final int[] blocks; // Used numbers per block.
+	private final int[] rowOf; // Row, column and block of every cell.
+	private final int[] columnOf;
+	private final int[] blockOf;
+
+	/**
+	 * Creates an empty model of a standard board, suitable for generating a
+	 * new solution.
+	 */
+	public ConstraintModel() {
+		this(Board.BOX_SIZE);
+	}
+
+	/**
+	 * Creates an empty model of a board of given box size.
+	 *
+	 * @param boxSize
+	 *            Box size, see {@link Board#getBoxSize()}.
+	 */
+	public ConstraintModel(int boxSize) {
+		int size = boxSize * boxSize;
+		this.boxSize = boxSize;
+		this.all = (1 << size) - 1;
+		this.rows = new int[size];
+		this.columns = new int[size];
+		this.blocks = new int[size];
+		this.rowOf = new int[size * size];
+		this.columnOf = new int[size * size];
+		this.blockOf = new int[size * size];
+		for (int position = 0; position < size * size; position++) {
+			rowOf[position] = position / size;
+			columnOf[position] = position % size;
+			blockOf[position] = getBlock(columnOf[position], rowOf[position]);
+		}
+	}
+
+	/**
+	 * Creates a model holding all the numbers present in the given game.
+	 *
+	 * @param game
+	 *            Game to read the numbers from.
+	 */
+	public ConstraintModel(Board game) {
+		this(game.getBoxSize());
+		for (int y = 0; y < game.getSize(); y++) {
+			for (int x = 0; x < game.getSize(); x++) {
+				if (game.get(x, y) > 0)
+					place(x, y, game.get(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Removes all numbers from the model, so it can be reused for another game.
+	 */
+	public void clear() {
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = 0;
+			columns[i] = 0;
+			blocks[i] = 0;
+		}
+	}
+
+	/**
+	 * Returns whether given number is a candidate for given position, i.e.
+	 * whether it is not used yet in the row, column or block of the position.
+	 *
+	 * @param x
+	 *            X position in game.
+	 * @param y
+	 *            Y position in game.
+	 * @param number
+	 *            Number to check.
+	 * @return True if number is candidate, false otherwise.
+	 */
+	public boolean isPossible(int x, int y, int number) {
+		return (getCandidates(x, y) & bit(number)) != 0;
+	}
+
+	/**
+	 * Returns the mask of candidates for given position.
+	 *
+	 * @param x
+	 *            X position in game.
+	 * @param y
+	 *            Y position in game.
+	 * @return Mask where bit (n - 1) is set if n is a candidate.
+	 */
+	public int getCandidates(int x, int y) {
+		return ~(rows[y] | columns[x] | blocks[getBlock(x, y)]) & all;
+	}
+
+	/**
+	 * Returns the mask of candidates for given cell.
+	 *
+	 * @param position
+	 *            Index of the cell in row order.
+	 * @see #getCandidates(int, int)
+	 */
+	public int getCandidates(int position) {
+		return ~(rows[rowOf[position]] | columns[columnOf[position]]
+				| blocks[blockOf[position]]) & all;
+	}
+
+	/**
+	 * Marks given number as used in the row, column and block of the cell.
+	 *
+	 * @param position
+	 *            Index of the cell in row order.
+	 * @param number
+	 *            Number placed on the cell.
+	 */
+	public void place(int position, int number) {
+		int bit = bit(number);
+		rows[rowOf[position]] |= bit;
+		columns[columnOf[position]] |= bit;
+		blocks[blockOf[position]] |= bit;
+	}
+
+	/**
+	 * Marks given number as no longer used in the row, column and block of
+	 * the cell.
+	 *
+	 * @param position
+	 *            Index of the cell in row order.
+	 * @param number
+	 *            Number removed from the cell.
+	 */
+	public void unplace(int position, int number) {
+		int bit = ~bit(number);
+		rows[rowOf[position]] &= bit;
+		columns[columnOf[position]] &= bit;
+		blocks[blockOf[position]] &= bit;
+	}
+
+	/**
+	 * Marks given number as used in the row, column and block of the position.
+	 *
+	 * @param x
+	 *            X position in game.
+	 * @param y
+	 *            Y position in game.
+	 * @param number
+	 *            Number placed on the position.
+	 */
+	public void place(int x, int y, int number) {
+		int bit = bit(number);
+		rows[y] |= bit;
+		columns[x] |= bit;
+		blocks[getBlock(x, y)] |= bit;
+	}
+
+	/**
+	 * Marks given number as no longer used in the row, column and block of the
+	 * position.
+	 *
+	 * @param x
+	 *            X position in game.
+	 * @param y
+	 *            Y position in game.
+	 * @param number
+	 *            Number removed from the position.
+	 */
+	public void unplace(int x, int y, int number) {
+		int bit = ~bit(number);
+		rows[y] &= bit;
+		columns[x] &= bit;
+		blocks[getBlock(x, y)] &= bit;
+	}
+
+	/**
+	 * Returns the box size of the board of the model.
+	 */
+	public int getBoxSize() {
+		return boxSize;
+	}
+
+	/**
+	 * Returns the mask with all numbers of the board set.
+	 */
+	public int getAll() {
+		return all;
+	}
+
+	/**
+	 * Returns the index of the block containing given position.
+	 */
+	public int getBlock(int x, int y) {
+		return (y / boxSize) * boxSize + x / boxSize;
+	}
+
+	/**
+	 * Returns the index of the block of a standard board containing given
+	 * position.
+	 */
+	public static int block(int x, int y) {
+		return (y / 3) * 3 + x / 3;
+	}
+
+	/**
+	 * Returns the mask bit of given number.
+	 */
+	public static int bit(int number) {
+		return 1 << (number - 1);
+	}
+
+	/**
+	 * Returns the number of candidates in given mask.
+	 */
+	public static int count(int mask) {
+		return Integer.bitCount(mask);
+	}
+
+	/**
+	 * Returns the smallest number in given mask, the mask must not be empty.
+	 */
+	public static int lowest(int mask) {
+		return Integer.numberOfTrailingZeros(mask) + 1;
+	}
+}
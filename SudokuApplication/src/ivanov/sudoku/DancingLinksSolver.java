@@ -0,0 +1,348 @@
+package ivanov.sudoku;
+
+import java.util.Random;
+
+/**
+ * Solves Sudoku as an exact cover problem with Knuth's Algorithm X and
+ * Dancing Links. The constraints (a number in every cell, every number in
+ * every row, column and block; 324 on a standard board) are the columns of
+ * the matrix and the possible placements (729) are its rows.<br />
+ * The links are kept in flat int arrays instead of node objects, and the
+ * matrix is built once per instance and box size. Every call covers the rows
+ * of the given numbers, searches with an explicit stack and uncovers
+ * everything again, so the matrix can be reused without allocating.
+ *
+ */
+public class DancingLinksSolver implements Solver {
+	private static final int ROOT = 0;
+
+	private int boxSize;
+	private int numbers; // Numbers of the board, and cells per row.
+	private int cells;
+	private int firstNode; // Index of the first row node.
+
+	private int[] left;
+	private int[] right;
+	private int[] up;
+	private int[] down;
+	private int[] column; // Column header of a node.
+	private int[] size; // Nodes per column.
+
+	private int[] givens; // Rows selected by the game.
+	private int[] chosen; // Row node per search level.
+	private int[] first; // First tried node per level.
+	private boolean[] covered;
+	private int givenCount;
+	private int solutionCount; // Solutions found by the last search.
+	private long budget = Long.MAX_VALUE; // Search nodes left.
+	private boolean exhausted; // Whether the last search ran out of nodes.
+
+	public DancingLinksSolver() {
+		build(Board.BOX_SIZE);
+	}
+
+	/**
+	 * Builds the matrix of boards of given box size.
+	 */
+	private void build(int boxSize) {
+		this.boxSize = boxSize;
+		numbers = boxSize * boxSize;
+		cells = numbers * numbers;
+		int columns = 4 * cells;
+		int rows = cells * numbers;
+		firstNode = columns + 1; // After the root and the column headers.
+		int nodes = firstNode + rows * 4;
+		left = new int[nodes];
+		right = new int[nodes];
+		up = new int[nodes];
+		down = new int[nodes];
+		column = new int[nodes];
+		size = new int[columns + 1];
+		givens = new int[cells];
+		chosen = new int[cells];
+		first = new int[cells];
+		covered = new boolean[columns + 1];
+		for (int c = 0; c <= columns; c++) {
+			left[c] = c == 0 ? columns : c - 1;
+			right[c] = c == columns ? 0 : c + 1;
+			up[c] = c;
+			down[c] = c;
+			column[c] = c;
+		}
+		for (int row = 0; row < rows; row++) {
+			int position = row / numbers;
+			int number = row % numbers;
+			int x = position % numbers;
+			int y = position / numbers;
+			int block = (y / boxSize) * boxSize + x / boxSize;
+			int node = firstNode + row * 4;
+			link(node, 1 + position);
+			link(node + 1, 1 + cells + y * numbers + number);
+			link(node + 2, 1 + 2 * cells + x * numbers + number);
+			link(node + 3, 1 + 3 * cells + block * numbers + number);
+			for (int k = 0; k < 4; k++) {
+				left[node + k] = node + (k + 3) % 4;
+				right[node + k] = node + (k + 1) % 4;
+			}
+		}
+	}
+
+	/**
+	 * Returns the node of the row placing given number on given cell.
+	 */
+	private int node(int position, int number) {
+		return firstNode + (position * numbers + number - 1) * 4;
+	}
+
+	@Override
+	public boolean solve(Board game, Random random) {
+		if (!coverGivens(game)) {
+			uncoverGivens();
+			return false;
+		}
+		int depth = search(random, 1);
+		if (depth >= 0) {
+			for (int level = 0; level < depth; level++) {
+				int row = (chosen[level] - firstNode) / 4;
+				game.set(row / numbers, row % numbers + 1);
+			}
+			unwind(depth);
+		}
+		uncoverGivens();
+		return depth >= 0;
+	}
+
+	@Override
+	public int countSolutions(Board game, int limit) {
+		int solutions = 0;
+		exhausted = false; // Not searched at all if the givens contradict.
+		if (coverGivens(game)) {
+			int depth = search(null, limit);
+			solutions = solutionCount;
+			unwind(depth);
+		}
+		uncoverGivens();
+		return solutions;
+	}
+
+	@Override
+	public boolean hasSolutionWithout(Board game, int position, int number) {
+		return hasSolutionWithout(game, position, number, Long.MAX_VALUE);
+	}
+
+	@Override
+	public boolean hasSolutionWithout(Board game, int position, int number,
+			long budget) {
+		if (game.getBoxSize() != boxSize)
+			build(game.getBoxSize());
+		int node = node(position, number);
+		removeRow(node);
+		this.budget = budget;
+		boolean found = countSolutions(game, 1) > 0 || exhausted;
+		this.budget = Long.MAX_VALUE;
+		restoreRow(node);
+		return found;
+	}
+
+	/**
+	 * Runs Algorithm X on the uncovered part of the matrix and counts the
+	 * solutions found.
+	 *
+	 * @param random
+	 *            Source of the row order, null for a fixed order.
+	 * @param limit
+	 *            Number of solutions after which the search stops.
+	 * @return The depth of the last solution when the limit was reached, or
+	 *         of the last node when the budget ran out, with its rows still
+	 *         covered, or -1 when every branch was tried (the matrix is then
+	 *         fully uncovered).
+	 */
+	private int search(Random random, int limit) {
+		solutionCount = 0;
+		exhausted = false;
+		int depth = 0;
+		boolean entering = true;
+		while (true) {
+			if (entering && --budget < 0) {
+				exhausted = true;
+				return depth;
+			}
+			if (entering) {
+				if (right[ROOT] == ROOT) {
+					if (++solutionCount >= limit)
+						return depth;
+				} else {
+					int c = chooseColumn();
+					if (size[c] > 0) {
+						cover(c);
+						int node = down[c];
+						if (random != null) {
+							for (int skip = random.nextInt(size[c]); skip > 0; skip--)
+								node = down[node];
+						}
+						first[depth] = node;
+						chosen[depth] = node;
+						coverRow(node);
+						depth++;
+						continue;
+					}
+				}
+			}
+			if (depth == 0)
+				return -1;
+			int level = depth - 1;
+			int node = chosen[level];
+			int c = column[node];
+			uncoverRow(node);
+			node = down[node];
+			if (node == c)
+				node = down[c];
+			if (node == first[level]) {
+				uncover(c);
+				depth--;
+				entering = false;
+				continue;
+			}
+			chosen[level] = node;
+			coverRow(node);
+			entering = true;
+		}
+	}
+
+	/**
+	 * Returns the uncovered column with the fewest rows.
+	 */
+	private int chooseColumn() {
+		int best = right[ROOT];
+		for (int c = right[best]; c != ROOT && size[best] > 1; c = right[c]) {
+			if (size[c] < size[best])
+				best = c;
+		}
+		return best;
+	}
+
+	/**
+	 * Covers the rows of all numbers of the game.
+	 *
+	 * @return False if two numbers of the game contradict each other.
+	 */
+	private boolean coverGivens(Board game) {
+		if (game.getBoxSize() != boxSize)
+			build(game.getBoxSize());
+		givenCount = 0;
+		for (int position = 0; position < cells; position++) {
+			if (game.get(position) == 0)
+				continue;
+			int node = node(position, game.get(position));
+			for (int k = 0; k < 4; k++) {
+				if (covered[column[node + k]])
+					return false;
+			}
+			cover(column[node]);
+			coverRow(node);
+			givens[givenCount++] = node;
+		}
+		return true;
+	}
+
+	/**
+	 * Uncovers the rows covered by {@link #coverGivens(Board)}.
+	 */
+	private void uncoverGivens() {
+		while (givenCount > 0) {
+			int node = givens[--givenCount];
+			uncoverRow(node);
+			uncover(column[node]);
+		}
+	}
+
+	/**
+	 * Uncovers the rows of the search levels left covered by a solution.
+	 */
+	private void unwind(int depth) {
+		while (depth > 0) {
+			int node = chosen[--depth];
+			uncoverRow(node);
+			uncover(column[node]);
+		}
+	}
+
+	/**
+	 * Appends a node at the bottom of given column.
+	 */
+	private void link(int node, int c) {
+		column[node] = c;
+		up[node] = up[c];
+		down[node] = c;
+		down[up[c]] = node;
+		up[c] = node;
+		size[c]++;
+	}
+
+	/**
+	 * Covers the columns of the row of given node, except the node's own.
+	 */
+	private void coverRow(int node) {
+		for (int j = right[node]; j != node; j = right[j])
+			cover(column[j]);
+	}
+
+	/**
+	 * Uncovers the columns covered by {@link #coverRow(int)}.
+	 */
+	private void uncoverRow(int node) {
+		for (int j = left[node]; j != node; j = left[j])
+			uncover(column[j]);
+	}
+
+	/**
+	 * Takes the nodes of a row out of their columns, so that no search can
+	 * select the row.
+	 */
+	private void removeRow(int node) {
+		for (int k = 0; k < 4; k++) {
+			int i = node + k;
+			down[up[i]] = down[i];
+			up[down[i]] = up[i];
+			size[column[i]]--;
+		}
+	}
+
+	/**
+	 * Puts back the nodes taken out by {@link #removeRow(int)}.
+	 */
+	private void restoreRow(int node) {
+		for (int k = 3; k >= 0; k--) {
+			int i = node + k;
+			down[up[i]] = i;
+			up[down[i]] = i;
+			size[column[i]]++;
+		}
+	}
+
+	private void cover(int c) {
+		covered[c] = true;
+		right[left[c]] = right[c];
+		left[right[c]] = left[c];
+		for (int i = down[c]; i != c; i = down[i]) {
+			for (int j = right[i]; j != i; j = right[j]) {
+				up[down[j]] = up[j];
+				down[up[j]] = down[j];
+				size[column[j]]--;
+			}
+		}
+	}
+
+	private void uncover(int c) {
+		for (int i = up[c]; i != c; i = up[i]) {
+			for (int j = left[i]; j != i; j = left[j]) {
+				size[column[j]]++;
+				up[down[j]] = j;
+				down[up[j]] = j;
+			}
+		}
+		right[left[c]] = c;
+		left[right[c]] = c;
+		covered[c] = false;
+	}
+}
@@ -0,0 +1,764 @@
+package ivanov.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Rates the difficulty of a game by solving it the way a person does. Every
+ * step applies the easiest technique which places a number or removes a
+ * candidate, and the rating is the score of the hardest technique the game
+ * needed. A game which the techniques cannot finish is rated
+ * {@link Technique#TRIAL_AND_ERROR}.<br />
+ * The candidates of every cell are kept as 9-bit masks (see
+ * {@link ConstraintModel#bit(int)}) in arrays allocated once per instance, so
+ * rating does not allocate anything on the heap. Instances are not thread
+ * safe, {@link #get()} returns the rater of the calling thread.<br />
+ * The same techniques find hints for a game in progress, one step at a time
+ * (see {@link #findHint(int[], int[], Hint)}).
+ *
+ */
+public class DifficultyRater {
+	/**
+	 * The techniques of the rater, from the easiest to the hardest.
+	 */
+	public enum Technique {
+		/** The only cell of a row, column or block for a number. */
+		HIDDEN_SINGLE(10),
+		/** A cell with a single candidate. */
+		NAKED_SINGLE(15),
+		/** A number of a block confined to one row or column. */
+		POINTING(20),
+		/** A number of a row or column confined to one block. */
+		BOX_LINE(25),
+		/** Two cells of a unit with the same two candidates. */
+		NAKED_PAIR(30),
+		/** Two numbers of a unit confined to the same two cells. */
+		HIDDEN_PAIR(35),
+		/** Three cells of a unit with three candidates between them. */
+		NAKED_TRIPLE(40),
+		/** Three numbers of a unit confined to the same three cells. */
+		HIDDEN_TRIPLE(45),
+		/** A number confined to the same two columns in two rows, or back. */
+		X_WING(50),
+		/** A number confined to the same three columns in three rows, or back. */
+		SWORDFISH(60),
+		/** A cell with candidates xy seeing cells with candidates xz and yz. */
+		XY_WING(70),
+		/** A chain of cells which are the only two places of a number in a unit. */
+		SIMPLE_COLORING(80),
+		/** None of the techniques applies. */
+		TRIAL_AND_ERROR(100);
+
+		private final int score;
+
+		private Technique(int score) {
+			this.score = score;
+		}
+
+		/**
+		 * Returns the rating of a game whose hardest technique is this one.
+		 */
+		public int getScore() {
+			return this.score;
+		}
+
+		/**
+		 * Returns the name of the technique for the player, such as
+		 * "Hidden single".
+		 */
+		public String getName() {
+			String name = this.name().replace('_', ' ').toLowerCase();
+			return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		}
+	}
+
+	private static final Technique[] TECHNIQUES = Technique.values();
+	private static final int[][] UNITS = createUnits();
+	private static final int[][] PEERS = createPeers();
+	private static final int[][] SEGMENTS = new int[54][]; // Line in a block.
+	private static final int[][] LINE_REST = new int[54][];
+	private static final int[][] BLOCK_REST = new int[54][];
+	static {
+		createSegments();
+	}
+
+	private static final ThreadLocal<DifficultyRater> RATERS = new ThreadLocal<DifficultyRater>() {
+		@Override
+		protected DifficultyRater initialValue() {
+			return new DifficultyRater();
+		}
+	};
+
+	private final int[] cells = new int[81];
+	private final int[] candidates = new int[81]; // 0 for filled cells.
+	private final int[] previous = new int[81]; // Candidates before a hint.
+	private final int[] uses = new int[TECHNIQUES.length];
+	private final int[] members = new int[9]; // Cells or numbers of a subset.
+	private final int[] positions = new int[9]; // Positions per number or line.
+	private final int[] colors = new int[81];
+	private final int[] queue = new int[81];
+	private final int[] linkStarts = new int[27];
+	private final int[] linkEnds = new int[27];
+	private int remaining;
+	private Technique hardest;
+
+	/**
+	 * Returns the rater of the calling thread.
+	 */
+	public static DifficultyRater get() {
+		return RATERS.get();
+	}
+
+	/**
+	 * Rates given game, which is not changed.
+	 *
+	 * @param game
+	 *            - the game to rate
+	 * @return the score of the hardest technique needed, 0 for a full board or
+	 *         -1 if the numbers of the game contradict each other
+	 * @throws IllegalArgumentException
+	 *             if the board is not standard
+	 */
+	public int rate(Board game) {
+		return this.rate(game, Technique.TRIAL_AND_ERROR.getScore());
+	}
+
+	/**
+	 * Rates given game, stopping as soon as a technique with a score above
+	 * given limit is needed. Used by the generator, which only needs to know
+	 * that a game is too hard.
+	 *
+	 * @param game
+	 *            - the game to rate
+	 * @param limit
+	 *            - the highest score of interest
+	 * @return the score as returned by {@link #rate(Board)}, or a score above
+	 *         the limit if the game needs a technique above it
+	 */
+	public int rate(Board game, int limit) {
+		game.checkStandard();
+		Arrays.fill(this.uses, 0);
+		Arrays.fill(this.cells, 0);
+		Arrays.fill(this.candidates, ConstraintModel.ALL);
+		this.remaining = 81;
+		this.hardest = null;
+		for (int cell = 0; cell < 81; cell++) {
+			int number = game.get(cell);
+			if (number == 0)
+				continue;
+			if ((this.candidates[cell] & ConstraintModel.bit(number)) == 0)
+				return -1;
+			this.place(cell, number);
+		}
+		while (this.remaining > 0) {
+			Technique technique = this.step(limit);
+			if (technique == null) {
+				this.hardest = null;
+				return -1;
+			}
+			this.uses[technique.ordinal()]++;
+			if (this.hardest == null
+					|| technique.ordinal() > this.hardest.ordinal())
+				this.hardest = technique;
+			if (technique == Technique.TRIAL_AND_ERROR
+					|| technique.getScore() > limit)
+				break;
+		}
+		return this.hardest == null ? 0 : this.hardest.getScore();
+	}
+
+	/**
+	 * Finds the easiest deduction for a game in progress, without applying
+	 * it. Only one step of the techniques runs, from the given candidates, so
+	 * the game is not solved.
+	 *
+	 * @param numbers
+	 *            - the number of each of the 81 cells, 0 if empty
+	 * @param candidates
+	 *            - the candidates of each cell as masks, 0 for filled cells;
+	 *            they may already lack candidates removed by earlier hints
+	 * @param hint
+	 *            - receives the deduction
+	 * @return true if a deduction was found, false if the techniques do not
+	 *         apply, the board is full or a cell has no candidate left
+	 */
+	public boolean findHint(int[] numbers, int[] candidates, Hint hint) {
+		System.arraycopy(numbers, 0, this.cells, 0, 81);
+		System.arraycopy(candidates, 0, this.candidates, 0, 81);
+		System.arraycopy(candidates, 0, this.previous, 0, 81);
+		this.remaining = 0;
+		for (int cell = 0; cell < 81; cell++) {
+			if (numbers[cell] == 0)
+				this.remaining++;
+		}
+		if (this.remaining == 0)
+			return false;
+		Technique technique = this.step(Technique.SIMPLE_COLORING.getScore());
+		if (technique == null || technique == Technique.TRIAL_AND_ERROR)
+			return false;
+		hint.clear(technique);
+		for (int cell = 0; cell < 81; cell++) {
+			if (this.cells[cell] != numbers[cell]) {
+				hint.setPlacement(cell, this.cells[cell]);
+				return true;
+			}
+		}
+		for (int cell = 0; cell < 81; cell++) {
+			int removed = this.previous[cell] & ~this.candidates[cell];
+			if (removed != 0)
+				hint.addRemoved(cell, removed);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hardest technique needed by the last rated game, null if it
+	 * was full or contradictory.
+	 */
+	public Technique getHardest() {
+		return this.hardest;
+	}
+
+	/**
+	 * Returns how many steps of the last rated game used given technique.
+	 */
+	public int getUses(Technique technique) {
+		return this.uses[technique.ordinal()];
+	}
+
+	/**
+	 * Applies the easiest technique which makes progress.
+	 *
+	 * @param limit
+	 *            - the highest score of the techniques to try
+	 * @return the technique, {@link Technique#TRIAL_AND_ERROR} if none of
+	 *         those up to the limit applies, or null if a cell has no
+	 *         candidate left
+	 */
+	private Technique step(int limit) {
+		int single = -1;
+		for (int cell = 0; cell < 81; cell++) {
+			int mask = this.candidates[cell];
+			if (this.cells[cell] == 0) {
+				if (mask == 0)
+					return null;
+				if (single < 0 && (mask & (mask - 1)) == 0)
+					single = cell;
+			}
+		}
+		if (this.hiddenSingle())
+			return Technique.HIDDEN_SINGLE;
+		if (single >= 0) {
+			this.place(single, ConstraintModel.lowest(this.candidates[single]));
+			return Technique.NAKED_SINGLE;
+		}
+		for (int i = Technique.POINTING.ordinal(); i < TECHNIQUES.length - 1; i++) {
+			Technique technique = TECHNIQUES[i];
+			if (technique.getScore() > limit)
+				break;
+			if (this.apply(technique))
+				return technique;
+		}
+		return Technique.TRIAL_AND_ERROR;
+	}
+
+	/**
+	 * Applies a technique harder than the singles.
+	 *
+	 * @return true if a candidate was removed
+	 */
+	private boolean apply(Technique technique) {
+		switch (technique) {
+		case POINTING:
+			return this.lockedCandidates(true);
+		case BOX_LINE:
+			return this.lockedCandidates(false);
+		case NAKED_PAIR:
+			return this.nakedSubset(2);
+		case HIDDEN_PAIR:
+			return this.hiddenSubset(2);
+		case NAKED_TRIPLE:
+			return this.nakedSubset(3);
+		case HIDDEN_TRIPLE:
+			return this.hiddenSubset(3);
+		case X_WING:
+			return this.fish(2);
+		case SWORDFISH:
+			return this.fish(3);
+		case XY_WING:
+			return this.xyWing();
+		case SIMPLE_COLORING:
+			return this.simpleColoring();
+		default:
+			return false;
+		}
+	}
+
+	private void place(int cell, int number) {
+		this.cells[cell] = number;
+		this.candidates[cell] = 0;
+		this.remaining--;
+		int bit = ~ConstraintModel.bit(number);
+		for (int peer : PEERS[cell]) {
+			this.candidates[peer] &= bit;
+		}
+	}
+
+	private boolean hiddenSingle() {
+		for (int[] unit : UNITS) {
+			int once = 0;
+			int twice = 0;
+			for (int cell : unit) {
+				int mask = this.candidates[cell];
+				twice |= once & mask;
+				once |= mask;
+			}
+			int single = once & ~twice;
+			if (single == 0)
+				continue;
+			single &= -single;
+			for (int cell : unit) {
+				if ((this.candidates[cell] & single) != 0) {
+					this.place(cell, ConstraintModel.lowest(single));
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds a number of the cells where a row or column crosses a block which
+	 * is not possible in the rest of the block (pointing) or of the line (box
+	 * line reduction) and removes it from the rest of the other unit.
+	 */
+	private boolean lockedCandidates(boolean pointing) {
+		for (int segment = 0; segment < SEGMENTS.length; segment++) {
+			int inside = this.union(SEGMENTS[segment]);
+			if (inside == 0)
+				continue;
+			int[] source = pointing ? BLOCK_REST[segment] : LINE_REST[segment];
+			int[] target = pointing ? LINE_REST[segment] : BLOCK_REST[segment];
+			int locked = inside & ~this.union(source);
+			if (locked != 0 && this.eliminate(target, locked))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Finds 2 or 3 cells of a unit with as many candidates between them and
+	 * removes these candidates from the other cells of the unit.
+	 */
+	private boolean nakedSubset(int size) {
+		for (int[] unit : UNITS) {
+			int count = 0;
+			for (int cell : unit) {
+				int mask = this.candidates[cell];
+				if (mask != 0 && ConstraintModel.count(mask) <= size)
+					this.members[count++] = cell;
+			}
+			for (int i = 0; i < count; i++) {
+				int first = this.candidates[this.members[i]];
+				for (int j = i + 1; j < count; j++) {
+					int pair = first | this.candidates[this.members[j]];
+					if (size == 2) {
+						if (ConstraintModel.count(pair) == 2
+								&& this.eliminateOthers(unit, pair,
+										this.members[i], this.members[j], -1))
+							return true;
+						continue;
+					}
+					if (ConstraintModel.count(pair) > 3)
+						continue;
+					for (int k = j + 1; k < count; k++) {
+						int triple = pair | this.candidates[this.members[k]];
+						if (ConstraintModel.count(triple) == 3
+								&& this.eliminateOthers(unit, triple,
+										this.members[i], this.members[j],
+										this.members[k]))
+							return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds 2 or 3 numbers of a unit confined to as many cells and removes the
+	 * other candidates of these cells.
+	 */
+	private boolean hiddenSubset(int size) {
+		for (int[] unit : UNITS) {
+			Arrays.fill(this.positions, 0);
+			for (int i = 0; i < 9; i++) {
+				for (int mask = this.candidates[unit[i]]; mask != 0; mask &= mask - 1) {
+					this.positions[Integer.numberOfTrailingZeros(mask)] |= 1 << i;
+				}
+			}
+			int count = 0;
+			for (int number = 0; number < 9; number++) {
+				int places = ConstraintModel.count(this.positions[number]);
+				if (places >= 2 && places <= size)
+					this.members[count++] = number;
+			}
+			for (int i = 0; i < count; i++) {
+				int first = this.positions[this.members[i]];
+				for (int j = i + 1; j < count; j++) {
+					int pair = first | this.positions[this.members[j]];
+					int numbers = 1 << this.members[i] | 1 << this.members[j];
+					if (size == 2) {
+						if (ConstraintModel.count(pair) == 2
+								&& this.restrict(unit, pair, numbers))
+							return true;
+						continue;
+					}
+					if (ConstraintModel.count(pair) > 3)
+						continue;
+					for (int k = j + 1; k < count; k++) {
+						int triple = pair | this.positions[this.members[k]];
+						if (ConstraintModel.count(triple) == 3
+								&& this.restrict(unit, triple, numbers
+										| 1 << this.members[k]))
+							return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds 2 (X-Wing) or 3 (Swordfish) rows where a number is confined to as
+	 * many columns and removes it from the other rows of these columns, then
+	 * the same with columns and rows swapped.
+	 */
+	private boolean fish(int size) {
+		for (int number = 1; number <= 9; number++) {
+			int bit = ConstraintModel.bit(number);
+			for (int columns = 0; columns < 2; columns++) {
+				int count = 0;
+				for (int line = 0; line < 9; line++) {
+					int places = 0;
+					for (int i = 0; i < 9; i++) {
+						int cell = columns == 0 ? line * 9 + i : i * 9 + line;
+						if ((this.candidates[cell] & bit) != 0)
+							places |= 1 << i;
+					}
+					this.positions[line] = places;
+					if (ConstraintModel.count(places) >= 2
+							&& ConstraintModel.count(places) <= size)
+						this.members[count++] = line;
+				}
+				for (int i = 0; i < count; i++) {
+					int first = this.positions[this.members[i]];
+					for (int j = i + 1; j < count; j++) {
+						int pair = first | this.positions[this.members[j]];
+						int lines = 1 << this.members[i] | 1 << this.members[j];
+						if (size == 2) {
+							if (ConstraintModel.count(pair) == 2
+									&& this.eliminateCrossing(columns, pair,
+											lines, bit))
+								return true;
+							continue;
+						}
+						if (ConstraintModel.count(pair) > 3)
+							continue;
+						for (int k = j + 1; k < count; k++) {
+							int triple = pair | this.positions[this.members[k]];
+							if (ConstraintModel.count(triple) == 3
+									&& this.eliminateCrossing(columns, triple,
+											lines | 1 << this.members[k], bit))
+								return true;
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds a pivot cell with candidates xy seeing two cells with candidates xz
+	 * and yz, and removes z from the cells seeing both of them.
+	 */
+	private boolean xyWing() {
+		for (int pivot = 0; pivot < 81; pivot++) {
+			int xy = this.candidates[pivot];
+			if (ConstraintModel.count(xy) != 2)
+				continue;
+			for (int first : PEERS[pivot]) {
+				int xz = this.candidates[first];
+				if (ConstraintModel.count(xz) != 2
+						|| ConstraintModel.count(xz & xy) != 1)
+					continue;
+				int yz = (xy & ~xz) | (xz & ~xy);
+				int z = xz & ~xy;
+				for (int second : PEERS[pivot]) {
+					if (this.candidates[second] != yz)
+						continue;
+					boolean changed = false;
+					for (int cell : PEERS[first]) {
+						if (cell != second && (this.candidates[cell] & z) != 0
+								&& isPeer(cell, second)) {
+							this.candidates[cell] &= ~z;
+							changed = true;
+						}
+					}
+					if (changed)
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Colors the chains of cells which are the only two places of a number in
+	 * a unit with two alternating colors. Either all cells of one color hold
+	 * the number or all cells of the other, so a color with two cells seeing
+	 * each other is false, and a cell seeing both colors cannot hold the
+	 * number.
+	 */
+	private boolean simpleColoring() {
+		for (int number = 1; number <= 9; number++) {
+			int bit = ConstraintModel.bit(number);
+			int links = 0;
+			for (int[] unit : UNITS) {
+				int start = -1;
+				int end = -1;
+				int count = 0;
+				for (int cell : unit) {
+					if ((this.candidates[cell] & bit) != 0) {
+						count++;
+						start = end;
+						end = cell;
+					}
+				}
+				if (count == 2) {
+					this.linkStarts[links] = start;
+					this.linkEnds[links] = end;
+					links++;
+				}
+			}
+			Arrays.fill(this.colors, -1);
+			for (int link = 0; link < links; link++) {
+				if (this.colors[this.linkStarts[link]] < 0
+						&& this.colorChain(this.linkStarts[link], link, links,
+								bit))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Colors the chain containing given cell and applies the coloring rules
+	 * to it.
+	 */
+	private boolean colorChain(int start, int chain, int links, int bit) {
+		int size = 0;
+		this.queue[size++] = start;
+		this.colors[start] = 2 * chain;
+		for (int head = 0; head < size; head++) {
+			int cell = this.queue[head];
+			for (int link = 0; link < links; link++) {
+				int other = this.linkStarts[link] == cell ? this.linkEnds[link]
+						: this.linkEnds[link] == cell ? this.linkStarts[link] : -1;
+				if (other >= 0 && this.colors[other] < 0) {
+					this.colors[other] = this.colors[cell] ^ 1;
+					this.queue[size++] = other;
+				}
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			for (int j = i + 1; j < size; j++) {
+				int first = this.queue[i];
+				if (this.colors[first] == this.colors[this.queue[j]]
+						&& isPeer(first, this.queue[j])) {
+					for (int k = 0; k < size; k++) {
+						if (this.colors[this.queue[k]] == this.colors[first])
+							this.candidates[this.queue[k]] &= ~bit;
+					}
+					return true;
+				}
+			}
+		}
+		boolean changed = false;
+		for (int cell = 0; cell < 81; cell++) {
+			if ((this.candidates[cell] & bit) == 0
+					|| this.colors[cell] >> 1 == chain)
+				continue;
+			int seen = 0;
+			for (int i = 0; i < size && seen != 3; i++) {
+				if (isPeer(cell, this.queue[i]))
+					seen |= 1 << (this.colors[this.queue[i]] & 1);
+			}
+			if (seen == 3) {
+				this.candidates[cell] &= ~bit;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	private int union(int[] cells) {
+		int mask = 0;
+		for (int cell : cells) {
+			mask |= this.candidates[cell];
+		}
+		return mask;
+	}
+
+	/**
+	 * Removes the numbers of given mask from given cells.
+	 *
+	 * @return true if a candidate was removed
+	 */
+	private boolean eliminate(int[] cells, int mask) {
+		boolean changed = false;
+		for (int cell : cells) {
+			if ((this.candidates[cell] & mask) != 0) {
+				this.candidates[cell] &= ~mask;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Removes the numbers of given mask from the cells of a unit other than
+	 * the given ones.
+	 */
+	private boolean eliminateOthers(int[] unit, int mask, int first,
+			int second, int third) {
+		boolean changed = false;
+		for (int cell : unit) {
+			if (cell != first && cell != second && cell != third
+					&& (this.candidates[cell] & mask) != 0) {
+				this.candidates[cell] &= ~mask;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Keeps only the numbers of given mask in the cells of a unit at given
+	 * positions.
+	 */
+	private boolean restrict(int[] unit, int positions, int numbers) {
+		boolean changed = false;
+		for (int i = 0; i < 9; i++) {
+			int cell = unit[i];
+			if ((positions & 1 << i) != 0
+					&& (this.candidates[cell] & ~numbers) != 0) {
+				this.candidates[cell] &= numbers;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Removes a number from the crossing lines of a fish, except in its base
+	 * lines.
+	 */
+	private boolean eliminateCrossing(int columns, int crossing, int lines,
+			int bit) {
+		boolean changed = false;
+		for (int line = 0; line < 9; line++) {
+			if ((lines & 1 << line) != 0)
+				continue;
+			for (int i = 0; i < 9; i++) {
+				int cell = columns == 0 ? line * 9 + i : i * 9 + line;
+				if ((crossing & 1 << i) != 0
+						&& (this.candidates[cell] & bit) != 0) {
+					this.candidates[cell] &= ~bit;
+					changed = true;
+				}
+			}
+		}
+		return changed;
+	}
+
+	private static boolean isPeer(int first, int second) {
+		int row = first / 9;
+		int column = first % 9;
+		int otherRow = second / 9;
+		int otherColumn = second % 9;
+		return first != second
+				&& (row == otherRow || column == otherColumn || (row / 3 == otherRow / 3 && column / 3 == otherColumn / 3));
+	}
+
+	/**
+	 * Creates the positions of the 9 rows, 9 columns and 9 blocks.
+	 */
+	private static int[][] createUnits() {
+		int[][] units = new int[27][9];
+		for (int i = 0; i < 9; i++) {
+			for (int j = 0; j < 9; j++) {
+				units[i][j] = i * 9 + j;
+				units[9 + i][j] = j * 9 + i;
+				units[18 + i][j] = ((i / 3) * 3 + j / 3) * 9 + (i % 3) * 3
+						+ j % 3;
+			}
+		}
+		return units;
+	}
+
+	/**
+	 * Creates the 20 positions sharing a row, column or block with each
+	 * position.
+	 */
+	private static int[][] createPeers() {
+		int[][] peers = new int[81][20];
+		for (int cell = 0; cell < 81; cell++) {
+			int count = 0;
+			for (int other = 0; other < 81; other++) {
+				if (isPeer(cell, other))
+					peers[cell][count++] = other;
+			}
+		}
+		return peers;
+	}
+
+	/**
+	 * Creates the 54 segments where a row or column crosses a block, with the
+	 * rest of the line and the rest of the block.
+	 */
+	private static void createSegments() {
+		int segment = 0;
+		for (int block = 0; block < 9; block++) {
+			int top = (block / 3) * 3;
+			int left = (block % 3) * 3;
+			for (int k = 0; k < 3; k++) {
+				for (int columns = 0; columns < 2; columns++) {
+					int[] cells = new int[3];
+					int[] lineRest = new int[6];
+					int[] blockRest = new int[6];
+					int line = columns == 0 ? top + k : left + k;
+					int first = columns == 0 ? left : top;
+					for (int i = 0, n = 0; i < 9; i++) {
+						if (i < first || i >= first + 3)
+							lineRest[n++] = columns == 0 ? line * 9 + i : i
+									* 9 + line;
+					}
+					for (int i = 0, n = 0, m = 0; i < 9; i++) {
+						int cell = (top + i / 3) * 9 + left + i % 3;
+						int offset = columns == 0 ? i / 3 : i % 3;
+						if (offset == k) {
+							cells[n++] = cell;
+						} else {
+							blockRest[m++] = cell;
+						}
+					}
+					SEGMENTS[segment] = cells;
+					LINE_REST[segment] = lineRest;
+					BLOCK_REST[segment] = blockRest;
+					segment++;
+				}
+			}
+		}
+	}
+}
@@ -1,311 +1,434 @@
 package ivanov.sudoku;
 
-import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
 
 /**
  * This class includes an algorithm to generate a fully solved Sudoku board, and
  * a corresponding Sudoku game (with missing cells) from it. The class also
  * contains a method to check the user input obtained from the NumbersPanel.
  * 
+ * Games are generated for a band of ratings of the {@link DifficultyRater}:
+ * numbers are removed in symmetric pairs and a removal is undone when it
+ * takes the rating above the band or the game loses its unique solution.
+ * The rater only knows standard boards, so games of larger boards (16x16,
+ * 25x25) are dug down to a share of clues which depends on the difficulty,
+ * see {@link #getMinClues(int, int)}.
+ * 
  * Credits to Eric Beijer for the algorithm
  *
  */
-public class Game implements Serializable {
-	private int[][] solution; // Generated solution.
-	private int[][] game; // Generated game with user input.
+public class Game {
+	public static final int EASY = 20; // Difficulties offered by New Game.
+	public static final int MEDIUM = 10;
+	public static final int HARD = -1;
+	public static final int EXPERT = -2;
+
+	private static final int GUESSING = DifficultyRater.Technique.TRIAL_AND_ERROR
+			.getScore();
+	private static final int SINGLES = DifficultyRater.Technique.NAKED_SINGLE
+			.getScore();
+	// Clues at which a game still solved by singles is dropped when a harder
+	// band is wanted, such games hardly ever need more than singles later.
+	private static final int SINGLES_CLUE_BOUND = 26;
+	// Percentage of the cells of a larger board kept as clues, at least.
+	private static final int[] CLUE_PERCENTAGES = { 55, 45, 38, 0 };
+	// Search nodes after which a removal from a larger board is given up.
+	private static final long LARGE_BUDGET = 100;
+
+	private Board solution; // Generated solution.
+	private Board game; // Generated game with user input.
+	private Random random; // Used while generating the game.
+	private int rating;
+	private boolean rated;
 
 	/**
 	 * Constructor which creates a new Sudoku game
 	 * 
-	 * @ param difficulty - a parameter indicating how many numbers on top of the
-	 * hardest level should the Sudoku have (0 - hardest, 10 -medium, 20 - easy)
+	 * @ param difficulty - one of {@link #EASY}, {@link #MEDIUM}, {@link #HARD}
+	 * and {@link #EXPERT}, see {@link #getMinRating(int)} for their ratings
 	 * 
 	 */
 	public Game(int dificulty) {
-		newGame(dificulty);
-		print(game);
-		print(solution);
+		this(dificulty, new Random());
+	}
+
+	/**
+	 * Constructor which creates a new Sudoku game using given random number
+	 * generator. Games created on different threads should each use their own
+	 * generator.
+	 * 
+	 * @param dificulty
+	 *            - see {@link #Game(int)}
+	 * @param random
+	 *            - the source of randomness for the solution and the removed
+	 *            numbers
+	 */
+	public Game(int dificulty, Random random) {
+		this(getMinRating(dificulty), getMaxRating(dificulty), random);
 	}
 
 	/**
-	 * Generates a new Sudoku game.<br />
+	 * Constructor which creates a new Sudoku game on a board of given box
+	 * size.
 	 *
+	 * @param dificulty
+	 *            - see {@link #Game(int)}
+	 * @param random
+	 *            - the source of randomness for the solution and the removed
+	 *            numbers
+	 * @param boxSize
+	 *            - the box size of the board, see {@link Board#getBoxSize()}
 	 */
-	private void newGame(int difficulty) {
-		solution = generateSolution(new int[9][9], 0);
-		game = generateGame(copy(solution), difficulty);
+	public Game(int dificulty, Random random, int boxSize) {
+		this.random = random;
+		if (boxSize == Board.BOX_SIZE) {
+			newGame(getMinRating(dificulty), getMaxRating(dificulty));
+		} else {
+			newLargeGame(boxSize, dificulty);
+		}
 	}
 
 	/**
-	 * Sets given number on given position in the game.
+	 * Constructor which creates a new Sudoku game whose rating is within given
+	 * bounds, inclusive.
+	 * 
+	 * @param minRating
+	 *            - the lowest accepted rating
+	 * @param maxRating
+	 *            - the highest accepted rating
+	 * @param random
+	 *            - the source of randomness for the solution and the removed
+	 *            numbers
+	 */
+	public Game(int minRating, int maxRating, Random random) {
+		if (minRating > maxRating || maxRating < 0)
+			throw new IllegalArgumentException("Invalid rating band");
+		this.random = random;
+		newGame(minRating, maxRating);
+	}
+
+	/**
+	 * Constructor which restores a game from a stored puzzle and its solution,
+	 * used when a saved game is loaded.
+	 * 
+	 * @param game
+	 *            - the puzzle, with the cells given by the game marked
+	 * @param solution
+	 *            - the solution of the puzzle
+	 */
+	public Game(Board game, Board solution) {
+		this.game = game;
+		this.solution = solution;
+	}
+
+	/**
+	 * Constructor which restores a game whose rating is known, used for games
+	 * of a {@link PuzzleLibrary} and their variants.
 	 *
-	 * @param x
-	 *            The x position in the game.
-	 * @param y
-	 *            The y position in the game.
-	 * @param number
-	 *            The number to be set.
+	 * @param rating
+	 *            - the rating of the puzzle, see {@link #getRating()}
+	 * @see #Game(Board, Board)
 	 */
-	public void setNumber(int x, int y, int number) {
-		game[y][x] = number;
+	public Game(Board game, Board solution, int rating) {
+		this(game, solution);
+		this.rating = rating;
+		this.rated = true;
 	}
 
 	/**
-	 * Returns number of given position.
+	 * Generates a new Sudoku game, solutions which do not give a game within
+	 * the band are dropped.<br />
 	 *
-	 * @param x
-	 *            X position in game.
-	 * @param y
-	 *            Y position in game.
-	 * @return Number of given position.
 	 */
-	public int getNumber(int x, int y) {
-		return game[y][x];
+	private void newGame(int minRating, int maxRating) {
+		do {
+			solution = generateSolution(random);
+			game = generateGame(new Board(solution), minRating, maxRating);
+		} while (game == null);
+		game.setGivens();
+		rated = true;
 	}
 
 	/**
-	 * Returns whether given number is candidate on x axis for given game.
+	 * Generates a new game on a board which is not standard, by removing
+	 * numbers until the share of clues of the difficulty is reached or no
+	 * more numbers can be removed. Proving that a removal keeps the solution
+	 * unique can take very long on these boards, so a removal whose proof
+	 * needs more than {@link #LARGE_BUDGET} search nodes is undone.
+	 */
+	private void newLargeGame(int boxSize, int difficulty) {
+		int minClues = getMinClues(boxSize, difficulty);
+		solution = generateSolution(boxSize, random);
+		game = new Board(solution);
+		int cells = game.getCellCount();
+		List<Integer> positions = new ArrayList<Integer>();
+		for (int i = 0; i <= (cells - 1) / 2; i++) {
+			positions.add(i);
+		}
+		Collections.shuffle(positions, random);
+		int clues = cells;
+		for (int position : positions) {
+			if (Thread.currentThread().isInterrupted())
+				throw new CancellationException("Game generation interrupted");
+			int mirror = cells - 1 - position;
+			int removed = position == mirror ? 1 : 2;
+			if (clues - removed < minClues)
+				break;
+			game.set(position, 0);
+			game.set(mirror, 0);
+			Solver solver = SolverFactory.get();
+			if (solver.hasSolutionWithout(game, position,
+					solution.get(position), LARGE_BUDGET)
+					|| (mirror != position && solver.hasSolutionWithout(game,
+							mirror, solution.get(mirror), LARGE_BUDGET))) {
+				game.set(position, solution.get(position));
+				game.set(mirror, solution.get(mirror));
+			} else {
+				clues -= removed;
+			}
+		}
+		game.setGivens();
+	}
+
+	/**
+	 * Returns the lowest number of clues of a game of given difficulty on a
+	 * board which is not standard: 55% of the cells for easy, 45% for medium,
+	 * 38% for hard and as few as the unique solution allows for expert.
 	 *
-	 * @param game
-	 *            Game to check.
-	 * @param y
-	 *            Position of x axis to check.
-	 * @param number
-	 *            Number to check.
-	 * @return True if number is candidate on x axis, false otherwise.
+	 * @throws IllegalArgumentException
+	 *             if the difficulty is unknown
 	 */
-	private boolean isPossibleX(int[][] game, int y, int number) {
-		for (int x = 0; x < 9; x++) {
-			if (game[y][x] == number)
-				return false;
+	public static int getMinClues(int boxSize, int difficulty) {
+		int cells = boxSize * boxSize * boxSize * boxSize;
+		int percentage;
+		switch (difficulty) {
+		case EASY:
+			percentage = CLUE_PERCENTAGES[0];
+			break;
+		case MEDIUM:
+			percentage = CLUE_PERCENTAGES[1];
+			break;
+		case HARD:
+			percentage = CLUE_PERCENTAGES[2];
+			break;
+		case EXPERT:
+			percentage = CLUE_PERCENTAGES[3];
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown difficulty: "
+					+ difficulty);
 		}
-		return true;
+		return cells * percentage / 100;
 	}
 
 	/**
-	 * Returns whether given number is candidate on y axis for given game.
+	 * Returns the lowest rating of a game of given difficulty: singles for
+	 * easy, locked candidates and subsets for medium, fish, wings and chains
+	 * for hard and guessing for expert.
 	 *
-	 * @param game
-	 *            Game to check.
-	 * @param x
-	 *            Position of y axis to check.
-	 * @param number
-	 *            Number to check.
-	 * @return True if number is candidate on y axis, false otherwise.
+	 * @throws IllegalArgumentException
+	 *             if the difficulty is unknown
 	 */
-	private boolean isPossibleY(int[][] game, int x, int number) {
-		for (int y = 0; y < 9; y++) {
-			if (game[y][x] == number)
-				return false;
+	public static int getMinRating(int difficulty) {
+		switch (difficulty) {
+		case EASY:
+			return DifficultyRater.Technique.HIDDEN_SINGLE.getScore();
+		case MEDIUM:
+			return DifficultyRater.Technique.POINTING.getScore();
+		case HARD:
+			return DifficultyRater.Technique.X_WING.getScore();
+		case EXPERT:
+			return GUESSING;
+		default:
+			throw new IllegalArgumentException("Unknown difficulty: "
+					+ difficulty);
 		}
-		return true;
 	}
 
 	/**
-	 * Returns whether given number is candidate in block for given game.
+	 * Returns the highest rating of a game of given difficulty.
+	 *
+	 * @see #getMinRating(int)
+	 */
+	public static int getMaxRating(int difficulty) {
+		switch (difficulty) {
+		case EASY:
+			return DifficultyRater.Technique.NAKED_SINGLE.getScore();
+		case MEDIUM:
+			return DifficultyRater.Technique.HIDDEN_TRIPLE.getScore();
+		case HARD:
+			return DifficultyRater.Technique.SIMPLE_COLORING.getScore();
+		case EXPERT:
+			return GUESSING;
+		default:
+			throw new IllegalArgumentException("Unknown difficulty: "
+					+ difficulty);
+		}
+	}
+
+	/**
+	 * Sets given number on given position in the game.
 	 *
-	 * @param game
-	 *            Game to check.
 	 * @param x
-	 *            Position of number on x axis in game to check.
+	 *            The x position in the game.
 	 * @param y
-	 *            Position of number on y axis in game to check.
+	 *            The y position in the game.
 	 * @param number
-	 *            Number to check.
-	 * @return True if number is candidate in block, false otherwise.
+	 *            The number to be set.
 	 */
-	private boolean isPossibleBlock(int[][] game, int x, int y, int number) {
-		int x1 = x < 3 ? 0 : x < 6 ? 3 : 6;
-		int y1 = y < 3 ? 0 : y < 6 ? 3 : 6;
-		for (int yy = y1; yy < y1 + 3; yy++) {
-			for (int xx = x1; xx < x1 + 3; xx++) {
-				if (game[yy][xx] == number)
-					return false;
-			}
-		}
-		return true;
+	public void setNumber(int x, int y, int number) {
+		game.set(x, y, number);
+		rated = false;
 	}
 
 	/**
-	 * Returns next possible number from list for given position or -1 when list
-	 * is empty.
+	 * Returns number of given position.
 	 *
-	 * @param game
-	 *            Game to check.
 	 * @param x
 	 *            X position in game.
 	 * @param y
 	 *            Y position in game.
-	 * @param numbers
-	 *            List of remaining numbers.
-	 * @return Next possible number for position in game or -1 when list is
-	 *         empty.
+	 * @return Number of given position.
 	 */
-	private int getNextPossibleNumber(int[][] game, int x, int y,
-			List<Integer> numbers) {
-		while (numbers.size() > 0) {
-			int number = numbers.remove(0);
-			if (isPossibleX(game, y, number) && isPossibleY(game, x, number)
-					&& isPossibleBlock(game, x, y, number))
-				return number;
-		}
-		return -1;
+	public int getNumber(int x, int y) {
+		return game.get(x, y);
 	}
 
 	/**
 	 * Generates Sudoku game solution.
 	 *
-	 * @param game
-	 *            Game to fill, user should pass 'new int[9][9]'.
-	 * @param index
-	 *            Current index, user should pass 0.
+	 * @param random
+	 *            Source of the candidate order.
 	 * @return Sudoku game solution.
 	 */
-	private int[][] generateSolution(int[][] game, int index) {
-		if (index > 80) {
-			return game;
-		}
-		int x = index % 9;
-		int y = index / 9;
-		List<Integer> numbers = new ArrayList<Integer>();
-		for (int i = 1; i <= 9; i++) {
-			numbers.add(i);
-		}
-		Collections.shuffle(numbers);
-		while (numbers.size() > 0) {
-			int number = getNextPossibleNumber(game, x, y, numbers);
-			if (number == -1)
-				return null;
-			game[y][x] = number;
-			int[][] tmpGame = generateSolution(game, index + 1);
-			if (tmpGame != null)
-				return tmpGame;
-			game[y][x] = 0;
-		}
-		return null;
+	static Board generateSolution(Random random) {
+		return generateSolution(Board.BOX_SIZE, random);
 	}
 
 	/**
-	 * Generates Sudoku game from solution.
+	 * Generates a solution of a board of given box size.
+	 *
+	 * @see #generateSolution(Random)
+	 */
+	static Board generateSolution(int boxSize, Random random) {
+		Board game = new Board(boxSize);
+		SolverFactory.get().solve(game, random);
+		return game;
+	}
+
+	/**
+	 * Generates Sudoku game from solution. The numbers are removed in pairs
+	 * symmetric about the centre, in random order. After every removal the
+	 * game is rated; a removal is undone when the rating exceeds the band, or
+	 * when the rater needs guessing and the solution is not unique any more.
+	 * A game the rater solves without guessing is unique, so the uniqueness
+	 * check only runs for games rated as guessing, and as the game was unique
+	 * before the removal it only looks for a solution which differs at the
+	 * removed cells, see {@link #hasOtherSolution(Board, int, int)}. When a band above the
+	 * singles is wanted, a game which is down to {@link #SINGLES_CLUE_BOUND}
+	 * clues and still solved by singles is dropped early.<br />
+	 * The generation stops with a CancellationException when the generating
+	 * thread is interrupted.
 	 *
 	 * @param game
 	 *            Game to be generated, user should pass a solution.
-	 * @return Generated Sudoku game.
+	 * @return Generated Sudoku game, or null if its rating stays below the
+	 *         band.
 	 */
-	private int[][] generateGame(int[][] game, int difficulty) {
+	private Board generateGame(Board game, int minRating, int maxRating) {
 		List<Integer> positions = new ArrayList<Integer>();
-		for (int i = 0; i < 81; i++){
+		for (int i = 0; i <= Board.CELLS / 2; i++){
 			positions.add(i);
 		}
-		Collections.shuffle(positions);
-		return generateGame(game, positions, difficulty);
+		Collections.shuffle(positions, random);
+		DifficultyRater rater = DifficultyRater.get();
+		int current = 0;
+		int clues = Board.CELLS;
+		for (int position : positions) {
+			if (Thread.currentThread().isInterrupted())
+				throw new CancellationException("Game generation interrupted");
+			int mirror = Board.CELLS - 1 - position;
+			int number = game.get(position);
+			int mirrorNumber = game.get(mirror);
+			game.set(position, 0);
+			game.set(mirror, 0);
+			int next = rater.rate(game, maxRating);
+			if (next > maxRating
+					|| (next == GUESSING && hasOtherSolution(game, position, mirror))) {
+				game.set(position, number);
+				game.set(mirror, mirrorNumber);
+			} else {
+				current = next;
+				clues -= position == mirror ? 1 : 2;
+				if (minRating > SINGLES && current <= SINGLES
+						&& clues <= SINGLES_CLUE_BOUND)
+					return null;
+			}
+		}
+		rating = current;
+		return current >= minRating ? game : null;
 	}
 
 	/**
-	 * Generates Sudoku game from solution, user should use the other
-	 * generateGame method. This method simple removes a number at a position.
-	 * If the game isn't anymore valid (does not have only 1 solution) after
-	 * this action, the game will be brought back to previous state.
-	 *
-	 * @param game
-	 *            Game to be generated.
-	 * @param positions
-	 *            List of remaining positions to clear.
-	 * @return Generated Sudoku game.
+	 * Checks whether a game which had the generated solution as its only
+	 * solution before the numbers of given cells were removed has another one
+	 * now. Any other solution differs from the generated one at one of these
+	 * cells, so each cell is searched with its number excluded, which fails
+	 * fast when the removal keeps the game unique.<br />
+	 * The searches share no state between removals on purpose. Every pair of
+	 * cells is tried once, so there is no proven clue to remember, and the
+	 * solver loads the 81 cells in far less time than the search takes. Only
+	 * games rated as guessing are searched at all: the check takes about a
+	 * fifth of the generation time of expert games and none of the other
+	 * difficulties, whose time goes to the rater.
 	 */
-	private int[][] generateGame(int[][] game, List<Integer> positions,
-			int difficulty) {
-		List<Integer> removedNumberIndex = new ArrayList<Integer>();
-		while (positions.size() > 0) {
-			int position = positions.remove(0);
-			removedNumberIndex.add(position);
-			int x = position % 9;
-			int y = position / 9;
-			int temp = game[y][x];
-			game[y][x] = 0;
-			if (!isValid(game)) {
-				game[y][x] = temp;
-				removedNumberIndex.remove((Integer) position);
-			}
-		}
-		this.setDificulty(game, removedNumberIndex, difficulty);
-		return game;
+	private boolean hasOtherSolution(Board game, int position, int mirror) {
+		Solver solver = SolverFactory.get();
+		return solver.hasSolutionWithout(game, position, solution.get(position))
+				|| (mirror != position && solver.hasSolutionWithout(game, mirror,
+						solution.get(mirror)));
 	}
-	
+
 	/**
-	 * An internal method used to set the difficulty to the game once a game has been created
-	 * @param game - the game for which the difficulty will be set 
-	 * @param removedNumberIndex - a list containing the position of each removed number
-	 * @param difficulty - an integer indicating what difficulty should the game be set to
+	 * Returns the game, 0 for the cells which are not set.
 	 */
-	private void setDificulty(int[][] game, List<Integer> removedNumberIndex, int difficulty){
-		int i = 0;
-		while (i <= difficulty) {
-			int position = removedNumberIndex.remove(i);
-			int x = position % 9;
-			int y = position / 9;
-			game[y][x] = this.solution[y][x];
-			i++;
-		}
+	public Board getGame() {
+		return this.game;
 	}
 
-	public int[][] getSolution() {
+	public Board getSolution() {
 		return this.solution;
 	}
 
 	/**
-	 * Checks whether given game is valid.
+	 * Returns the rating of the game by the human techniques it needs.
 	 *
-	 * @param game
-	 *            Game to check.
-	 * @return True if game is valid, false otherwise.
+	 * @throws IllegalArgumentException
+	 *             if the board is not standard
+	 * @see DifficultyRater#rate(Board)
 	 */
-	private boolean isValid(int[][] game) {
-		return isValid(game, 0, new int[] { 0 });
+	public int getRating() {
+		if (!this.rated) {
+			this.rating = DifficultyRater.get().rate(this.game);
+			this.rated = true;
+		}
+		return this.rating;
 	}
 
 	/**
-	 * Checks whether given game is valid, user should use the other isValid
-	 * method. There may only be one solution.
+	 * Checks whether given game is valid. There may only be one solution.
 	 *
 	 * @param game
 	 *            Game to check.
-	 * @param index
-	 *            Current index to check.
-	 * @param numberOfSolutions
-	 *            Number of found solutions. Int[] instead of int because of
-	 *            pass by reference.
 	 * @return True if game is valid, false otherwise.
 	 */
-	private boolean isValid(int[][] game, int index, int[] numberOfSolutions) {
-		if (index > 80)
-			return ++numberOfSolutions[0] == 1;
-		int x = index % 9;
-		int y = index / 9;
-		if (game[y][x] == 0) {
-			List<Integer> numbers = new ArrayList<Integer>();
-			for (int i = 1; i <= 9; i++){
-				numbers.add(i);
-			}
-			while (numbers.size() > 0) {
-				int number = getNextPossibleNumber(game, x, y, numbers);
-				if (number == -1){
-					break;
-				}
-				game[y][x] = number;
-				if (!isValid(game, index + 1, numberOfSolutions)) {
-					game[y][x] = 0;
-					return false;
-				}
-				game[y][x] = 0;
-			}
-		} else if (!isValid(game, index + 1, numberOfSolutions)) {
-			return false;
-		}
-		return true;
+	static boolean isValid(Board game) {
+		return SolverFactory.get().countSolutions(game, 2) == 1;
 	}
 
 	/**
@@ -313,34 +436,25 @@ public class Game implements Serializable {
 	 * 
 	 * @param userGame
 	 *            - the game to be checked
-	 * @return a boolean matrix indicating whether a number in the game to be
-	 *         checked is correct or not
+	 * @return the indices of the cells whose number in the game to be checked
+	 *         is not correct
 	 */
 
-	public boolean[][] checkUserGame(int[][] userGame) {
-		boolean[][] checkMatrix = new boolean[9][9];
-		for (int i = 0; i < userGame.length; i++) {
-			for (int j = 0; j < userGame[i].length; j++) {
-				checkMatrix[i][j] = userGame[i][j] == this.solution[i][j];
-			}
+	public BitSet checkUserGame(Board userGame) {
+		BitSet wrong = new BitSet(userGame.getCellCount());
+		for (int i = 0; i < userGame.getCellCount(); i++) {
+			if (userGame.get(i) != this.solution.get(i))
+				wrong.set(i);
 		}
-		return checkMatrix;
+		return wrong;
 	}
 
 	/**
-	 * Copies a game.
-	 *
-	 * @param game
-	 *            Game to be copied.
-	 * @return Copy of given game.
+	 * Prints the game and its solution - used for debugging
 	 */
-	private int[][] copy(int[][] game) {
-		int[][] copy = new int[9][9];
-		for (int y = 0; y < 9; y++) {
-			for (int x = 0; x < 9; x++)
-				copy[y][x] = game[y][x];
-		}
-		return copy;
+	public void print() {
+		print(game);
+		print(solution);
 	}
 
 	/**
@@ -348,11 +462,11 @@ public class Game implements Serializable {
 	 * 
 	 * @param game
 	 */
-	private void print(int[][] game) {
+	private void print(Board game) {
 		System.out.println();
-		for (int y = 0; y < 9; y++) {
-			for (int x = 0; x < 9; x++)
-				System.out.print(" " + game[y][x]);
+		for (int y = 0; y < game.getSize(); y++) {
+			for (int x = 0; x < game.getSize(); x++)
+				System.out.print(" " + game.get(x, y));
 			System.out.println();
 		}
 	}
@@ -363,7 +477,7 @@ public class Game implements Serializable {
 	 * @param solutionCopy
 	 *            - the solution to the game
 	 */
-	public void setSolution(int[][] solutionCopy) {
+	public void setSolution(Board solutionCopy) {
 		this.solution = solutionCopy;
 	}
 
@@ -0,0 +1,208 @@
+package ivanov.sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of ready generated games for each difficulty level offered by the
+ * New Game menu (easy, medium, hard and expert). The pool is filled by
+ * low priority worker threads when it is started and refilled whenever a
+ * difficulty drops to its watermark, so taking a game is a simple poll.<br />
+ * The pool is configured with the system properties
+ * <code>sudoku.pool.size</code> (games kept per difficulty, default 4),
+ * <code>sudoku.pool.watermark</code> (refill threshold, default 2) and
+ * <code>sudoku.pool.threads</code> (worker threads, default 1).
+ *
+ */
+public class GamePool {
+	public static final int[] DIFFICULTIES = { Game.EASY, Game.MEDIUM,
+			Game.HARD, Game.EXPERT };
+
+	private final int watermark;
+	private final List<BlockingQueue<Game>> games;
+	private final AtomicInteger[] pending; // Games being generated.
+	private final AtomicLong[] hits;
+	private final AtomicLong[] misses;
+	private final ExecutorService workers;
+
+	/**
+	 * Creates a pool configured from the system properties.
+	 */
+	public GamePool() {
+		this(Integer.getInteger("sudoku.pool.size", 4), Integer.getInteger(
+				"sudoku.pool.watermark", 2), Integer.getInteger(
+				"sudoku.pool.threads", 1));
+	}
+
+	/**
+	 * Creates a pool, no games are generated before {@link #start()}.
+	 *
+	 * @param size
+	 *            - the number of games kept for each difficulty
+	 * @param watermark
+	 *            - the number of games at or below which a difficulty is
+	 *            refilled
+	 * @param threads
+	 *            - the number of worker threads generating games
+	 */
+	public GamePool(int size, int watermark, int threads) {
+		if (size < 1 || watermark < 0 || watermark >= size || threads < 1)
+			throw new IllegalArgumentException("Invalid pool configuration");
+		this.watermark = watermark;
+		this.games = new ArrayList<BlockingQueue<Game>>(DIFFICULTIES.length);
+		this.pending = new AtomicInteger[DIFFICULTIES.length];
+		this.hits = new AtomicLong[DIFFICULTIES.length];
+		this.misses = new AtomicLong[DIFFICULTIES.length];
+		for (int i = 0; i < DIFFICULTIES.length; i++) {
+			this.games.add(new ArrayBlockingQueue<Game>(size));
+			this.pending[i] = new AtomicInteger();
+			this.hits[i] = new AtomicLong();
+			this.misses[i] = new AtomicLong();
+		}
+		this.workers = Executors.newFixedThreadPool(threads,
+				new WorkerFactory());
+	}
+
+	/**
+	 * Starts filling the pool for all difficulties.
+	 */
+	public void start() {
+		for (int i = 0; i < DIFFICULTIES.length; i++) {
+			this.refill(i);
+		}
+	}
+
+	/**
+	 * Stops the worker threads, games being generated are abandoned.
+	 */
+	public void shutdown() {
+		this.workers.shutdownNow();
+	}
+
+	/**
+	 * Takes a ready game of given difficulty from the pool.
+	 *
+	 * @param difficulty
+	 *            - the difficulty as passed to the Game constructor
+	 * @return a generated game or null if none is ready (a miss)
+	 */
+	public Game take(int difficulty) {
+		int index = indexOf(difficulty);
+		if (index < 0)
+			return null;
+		Game game = this.games.get(index).poll();
+		if (game != null) {
+			this.hits[index].incrementAndGet();
+		} else {
+			this.misses[index].incrementAndGet();
+		}
+		if (this.games.get(index).size() <= this.watermark)
+			this.refill(index);
+		return game;
+	}
+
+	/**
+	 * Returns the number of ready games of given difficulty.
+	 */
+	public int getAvailable(int difficulty) {
+		int index = indexOf(difficulty);
+		return index < 0 ? 0 : this.games.get(index).size();
+	}
+
+	/**
+	 * Returns how many times a game of given difficulty was taken from the
+	 * pool.
+	 */
+	public long getHits(int difficulty) {
+		int index = indexOf(difficulty);
+		return index < 0 ? 0 : this.hits[index].get();
+	}
+
+	/**
+	 * Returns how many times no game of given difficulty was ready.
+	 */
+	public long getMisses(int difficulty) {
+		int index = indexOf(difficulty);
+		return index < 0 ? 0 : this.misses[index].get();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("GamePool");
+		for (int i = 0; i < DIFFICULTIES.length; i++) {
+			builder.append(String.format(" [%d: ready=%d hits=%d misses=%d]",
+					DIFFICULTIES[i], this.games.get(i).size(),
+					this.hits[i].get(), this.misses[i].get()));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Schedules the generation of enough games to fill given difficulty.
+	 */
+	private void refill(int index) {
+		BlockingQueue<Game> queue = this.games.get(index);
+		while (queue.remainingCapacity() > this.pending[index].get()) {
+			this.pending[index].incrementAndGet();
+			try {
+				this.workers.execute(new Generator(index));
+			} catch (RuntimeException e) { // The pool has been shut down.
+				this.pending[index].decrementAndGet();
+				return;
+			}
+		}
+	}
+
+	private static int indexOf(int difficulty) {
+		for (int i = 0; i < DIFFICULTIES.length; i++) {
+			if (DIFFICULTIES[i] == difficulty)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Generates one game and adds it to the pool.
+	 *
+	 */
+	private class Generator implements Runnable {
+		private int index;
+
+		private Generator(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public void run() {
+			try {
+				games.get(index).offer(new Game(DIFFICULTIES[index]));
+			} finally {
+				pending[index].decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Creates the low priority daemon threads of the pool.
+	 *
+	 */
+	private static class WorkerFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "GamePool-"
+					+ count.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package ivanov.sudoku;
+
+/**
+ * The next logical deduction for a game in progress, found by a
+ * {@link HintEngine}: the technique, and either the number it places in a
+ * cell or the candidates it removes from some cells. A hint is filled in
+ * place by the engine, so asking for hints does not allocate.
+ *
+ */
+public final class Hint {
+	private DifficultyRater.Technique technique;
+	private int number; // Placed number, 0 for eliminations.
+	private final int[] cells = new int[Board.CELLS];
+	private final int[] removed = new int[Board.CELLS]; // Masks per cell.
+	private int count;
+
+	/**
+	 * Returns the technique of the deduction.
+	 */
+	public DifficultyRater.Technique getTechnique() {
+		return this.technique;
+	}
+
+	/**
+	 * Returns whether the deduction places a number, rather than removing
+	 * candidates.
+	 */
+	public boolean isPlacement() {
+		return this.number != 0;
+	}
+
+	/**
+	 * Returns the number placed by the deduction, 0 if it removes candidates.
+	 */
+	public int getNumber() {
+		return this.number;
+	}
+
+	/**
+	 * Returns the number of cells affected by the deduction, 1 for a
+	 * placement.
+	 */
+	public int getCellCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns an affected cell.
+	 *
+	 * @param i
+	 *            - from 0 to {@link #getCellCount()} - 1
+	 * @return the index of the cell in row order
+	 */
+	public int getCell(int i) {
+		return this.cells[i];
+	}
+
+	/**
+	 * Returns the mask of the candidates removed from an affected cell, 0 for
+	 * a placement.
+	 *
+	 * @param i
+	 *            - from 0 to {@link #getCellCount()} - 1
+	 */
+	public int getRemoved(int i) {
+		return this.removed[i];
+	}
+
+	/**
+	 * Describes the deduction for the player, such as "Naked single: 7 at
+	 * r3c5" or "Pointing: remove 4 from r1c7; 4/8 from r1c9", where r3c5 is
+	 * the cell of row 3 and column 5.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder(this.technique.getName());
+		if (this.isPlacement()) {
+			text.append(": ").append(this.number).append(" at ");
+			appendCell(text, this.cells[0]);
+			return text.toString();
+		}
+		text.append(": remove");
+		for (int i = 0; i < this.count; i++) {
+			text.append(i == 0 ? " " : "; ");
+			for (int mask = this.removed[i]; mask != 0; mask &= mask - 1) {
+				text.append(ConstraintModel.lowest(mask));
+				if ((mask & (mask - 1)) != 0)
+					text.append('/');
+			}
+			text.append(" from ");
+			appendCell(text, this.cells[i]);
+		}
+		return text.toString();
+	}
+
+	void clear(DifficultyRater.Technique technique) {
+		this.technique = technique;
+		this.number = 0;
+		this.count = 0;
+	}
+
+	void setPlacement(int cell, int number) {
+		this.number = number;
+		this.cells[0] = cell;
+		this.removed[0] = 0;
+		this.count = 1;
+	}
+
+	void addRemoved(int cell, int mask) {
+		this.cells[this.count] = cell;
+		this.removed[this.count] = mask;
+		this.count++;
+	}
+
+	private static void appendCell(StringBuilder text, int cell) {
+		text.append('r').append(cell / 9 + 1).append('c').append(cell % 9 + 1);
+	}
+}
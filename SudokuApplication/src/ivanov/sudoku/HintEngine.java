@@ -0,0 +1,162 @@
+package ivanov.sudoku;
+
+/**
+ * Keeps the candidates of every cell of a game in progress and finds the
+ * next logical deduction on request.<br />
+ * The numbers of the board are held in a {@link ConstraintModel}, which is
+ * updated as cells change, so the candidates of a cell are read in constant
+ * time and never recomputed for the whole board. The user may type a number
+ * twice in a unit, so every row, column and block also counts its numbers,
+ * and erasing one of two equal numbers keeps the number used in the units
+ * the other one is in. A hint runs a single step
+ * of the techniques of the {@link DifficultyRater} from these candidates and
+ * takes a few microseconds. The candidates removed by a hint are remembered,
+ * so they disappear from {@link #getCandidates(int)} and the next hint goes
+ * further; they are forgotten when a number is erased or replaced, since the
+ * deduction may have depended on it.<br />
+ * Candidates are kept for boards of every size, hints are only found on 9x9
+ * boards.
+ *
+ */
+public class HintEngine {
+	private final int boxSize;
+	private final int size;
+	private final int cellCount;
+	private final boolean standard;
+	private final ConstraintModel model;
+	private final int[] numbers;
+	private final int[] counts; // Per unit and number: rows, columns, blocks.
+	private final int[] eliminated; // Candidates removed by hints.
+	private final int[] candidates; // Passed to the rater.
+	private boolean anyEliminated;
+
+	/**
+	 * Creates an engine of an empty board of given box size.
+	 *
+	 * @param boxSize
+	 *            - the box size, see {@link Board#getBoxSize()}
+	 */
+	public HintEngine(int boxSize) {
+		this.boxSize = boxSize;
+		this.size = boxSize * boxSize;
+		this.cellCount = this.size * this.size;
+		this.standard = boxSize == Board.BOX_SIZE;
+		this.model = new ConstraintModel(boxSize);
+		this.numbers = new int[this.cellCount];
+		this.counts = new int[3 * this.size * this.size];
+		this.eliminated = new int[this.cellCount];
+		this.candidates = new int[this.cellCount];
+	}
+
+	/**
+	 * Changes the number of a cell.
+	 *
+	 * @param position
+	 *            - the index of the cell in row order
+	 * @param number
+	 *            - the new number of the cell, 0 to empty it
+	 */
+	public void set(int position, int number) {
+		int old = this.numbers[position];
+		if (old == number)
+			return;
+		this.numbers[position] = number;
+		if (old != 0) {
+			this.model.unplace(position, old);
+			if (this.countUnits(position, old, -1))
+				this.placeAgain(position, old);
+			this.forgetEliminations();
+		}
+		if (number != 0) {
+			this.model.place(position, number);
+			this.countUnits(position, number, 1);
+		}
+	}
+
+	/**
+	 * Returns the candidates of a cell as a mask where bit (n - 1) is set if
+	 * n is a candidate, 0 for a filled cell. Two numbers of a row, column or
+	 * block may leave a cell without candidates.
+	 */
+	public int getCandidates(int position) {
+		if (this.numbers[position] != 0)
+			return 0;
+		return this.model.getCandidates(position) & ~this.eliminated[position];
+	}
+
+	/**
+	 * Finds the easiest deduction for the current numbers. A deduction which
+	 * removes candidates is remembered, see the class description; a
+	 * placement is left to the player.
+	 *
+	 * @param hint
+	 *            - receives the deduction
+	 * @return true if a deduction was found, false if the board is not 9x9,
+	 *         is full or contradictory, or needs trial and error
+	 */
+	public boolean findHint(Hint hint) {
+		if (!this.standard)
+			return false;
+		for (int position = 0; position < this.cellCount; position++) {
+			this.candidates[position] = this.getCandidates(position);
+		}
+		if (!DifficultyRater.get().findHint(this.numbers, this.candidates,
+				hint))
+			return false;
+		for (int i = 0; !hint.isPlacement() && i < hint.getCellCount(); i++) {
+			this.eliminated[hint.getCell(i)] |= hint.getRemoved(i);
+			this.anyEliminated = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Adds given change to the counts of a number in the units of a cell.
+	 *
+	 * @return whether the number is still used in one of the units
+	 */
+	private boolean countUnits(int position, int number, int change) {
+		int x = position % this.size;
+		int y = position / this.size;
+		int block = (y / this.boxSize) * this.boxSize + x / this.boxSize;
+		boolean used = this.count(y, number, change) > 0;
+		used |= this.count(this.size + x, number, change) > 0;
+		used |= this.count(2 * this.size + block, number, change) > 0;
+		return used;
+	}
+
+	private int count(int unit, int number, int change) {
+		return this.counts[unit * this.size + number - 1] += change;
+	}
+
+	/**
+	 * Places the number erased from a cell again on the cells of its units
+	 * which still hold it, as erasing it cleared it from all three units.
+	 */
+	private void placeAgain(int position, int number) {
+		int x = position % this.size;
+		int y = position / this.size;
+		int left = x / this.boxSize * this.boxSize;
+		int top = y / this.boxSize * this.boxSize;
+		for (int i = 0; i < this.size; i++) {
+			this.placeIfHeld(y * this.size + i, number);
+			this.placeIfHeld(i * this.size + x, number);
+			this.placeIfHeld((top + i / this.boxSize) * this.size + left + i
+					% this.boxSize, number);
+		}
+	}
+
+	private void placeIfHeld(int position, int number) {
+		if (this.numbers[position] == number)
+			this.model.place(position, number);
+	}
+
+	private void forgetEliminations() {
+		if (!this.anyEliminated)
+			return;
+		for (int position = 0; position < this.cellCount; position++) {
+			this.eliminated[position] = 0;
+		}
+		this.anyEliminated = false;
+	}
+}
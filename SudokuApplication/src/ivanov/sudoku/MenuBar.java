@@ -2,24 +2,27 @@ package ivanov.sudoku;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.KeyStroke;
 
 /**
  * This class represents the File menu at the top of the application. The menu contains a 
  * New game - another menu which offers 3 possible difficulty levels -Easy, Medium and Hard 
+ * Board size - another menu which offers 9x9, 16x16 and 25x25 boards and starts an easy game of the chosen size
  * Load game - a button used to load a saved game 
+ * The Edit menu next to it undoes and redoes the moves of the user (Ctrl+Z and Ctrl+Y) or undoes all of them.
+ * The Hints menu shows the next logical deduction or the candidates of the empty cells.
  * Save game - a button used to save a current game 
  * Exit - a button used to exit the application. Upon restarting the application there will be a completely new game
  * @author Ivo Ivanov
@@ -31,9 +34,12 @@ public class MenuBar extends JMenuBar {
 	private TimeKeeper timeKeeper;
 	private JMenu file;
 	private JMenu newGame;
+	private JMenu boardSize;
 	private JMenuItem loadGame;
 	private JMenuItem saveGame;
 	private JMenuItem exit;
+	private JMenu edit;
+	private JMenu hints;
 	
 	/**
 	 * Constructor creating the MenuBar 
@@ -47,6 +53,12 @@ public class MenuBar extends JMenuBar {
 		this.timeKeeper = timeKeeper;
 		this.file = this.createFileMenu();
 		this.add(this.file);
+		this.edit = this.createEditMenu();
+		this.add(this.edit);
+		this.hints = this.createHintsMenu();
+		this.add(this.hints);
+		this.numbersPanel.addPropertyChangeListener(
+				NumbersPanel.NEW_GAME_PROPERTY, new NewGameTimerListener());
 	}
 	
 	/**
@@ -61,6 +73,9 @@ public class MenuBar extends JMenuBar {
 		this.newGame = this.createNewGameMenu();
 		menu.add(newGame);
 		
+		this.boardSize = this.createBoardSizeMenu();
+		menu.add(boardSize);
+		
 		this.saveGame = new JMenuItem("Save Game");
 		this.saveGame.addActionListener(new SaveGameListener(this.numbersPanel));
 		menu.add(saveGame);
@@ -76,6 +91,92 @@ public class MenuBar extends JMenuBar {
 		return menu;
 	}
 	
+	/**
+	 * creates the Edit menu with the undo and redo buttons
+	 * 
+	 * @return the created JMenu
+	 */
+	private JMenu createEditMenu() {
+		JMenu editMenu = new JMenu("Edit");
+		
+		JMenuItem undo = new JMenuItem("Undo");
+		undo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z,
+				InputEvent.CTRL_DOWN_MASK));
+		undo.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				numbersPanel.undo();
+			}
+		});
+		editMenu.add(undo);
+		
+		JMenuItem redo = new JMenuItem("Redo");
+		redo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y,
+				InputEvent.CTRL_DOWN_MASK));
+		redo.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				numbersPanel.redo();
+			}
+		});
+		editMenu.add(redo);
+		
+		JMenuItem undoAll = new JMenuItem("Undo All");
+		undoAll.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				numbersPanel.goToMove(numbersPanel.getHistory().getFirst());
+			}
+		});
+		editMenu.add(undoAll);
+		
+		return editMenu;
+	}
+
+	/**
+	 * creates the Hints menu with the hint button and the check box showing
+	 * the candidates
+	 * 
+	 * @return the created JMenu
+	 */
+	private JMenu createHintsMenu() {
+		JMenu hintsMenu = new JMenu("Hints");
+		
+		JMenuItem hint = new JMenuItem("Show Hint");
+		hint.addActionListener(new HintListener());
+		hintsMenu.add(hint);
+		
+		final JCheckBoxMenuItem candidates = new JCheckBoxMenuItem("Show Candidates");
+		candidates.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				numbersPanel.setShowCandidates(candidates.isSelected());
+			}
+		});
+		hintsMenu.add(candidates);
+		
+		return hintsMenu;
+	}
+
+	/**
+	 * An ActionListener for the hint button, which highlights the cells of the
+	 * next deduction on the board and names its technique
+	 *
+	 */
+	private class HintListener implements ActionListener {
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			Hint hint = numbersPanel.showHint();
+			if (hint == null) {
+				JOptionPane.showMessageDialog(numbersPanel,
+						"No hint found, the game may have wrong numbers or need guessing.");
+			} else {
+				JOptionPane.showMessageDialog(numbersPanel, hint.toString());
+			}
+		}
+	}
+
 	/**
 	 * creates the New game menu with all the difficulty buttons 
 	 * 
@@ -96,15 +197,57 @@ public class MenuBar extends JMenuBar {
 		hard.addActionListener(new NewGameListener());
 		newGameMenu.add(hard);
 		
+		JMenuItem expert = new JMenuItem("Expert");
+		expert.addActionListener(new NewGameListener());
+		newGameMenu.add(expert);
+		
 		return newGameMenu;
 	}
 
+	/**
+	 * creates the Board Size menu with a button for every supported size
+	 * 
+	 * @return the created JMenu
+	 */
+	private JMenu createBoardSizeMenu() {
+		JMenu boardSizeMenu = new JMenu("Board Size");
+		for (int boxSize = Board.BOX_SIZE; boxSize <= Board.MAX_BOX_SIZE; boxSize++) {
+			int size = boxSize * boxSize;
+			JMenuItem item = new JMenuItem(size + "x" + size);
+			item.addActionListener(new BoardSizeListener(boxSize));
+			boardSizeMenu.add(item);
+		}
+		return boardSizeMenu;
+	}
+
+	/**
+	 * This action listener changes the size of the board and sets a new easy
+	 * Game of that size, as the old game does not fit on the new board.
+	 *
+	 */
+	private class BoardSizeListener implements ActionListener {
+		private int boxSize;
+
+		public BoardSizeListener(int boxSize) {
+			this.boxSize = boxSize;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (numbersPanel.getBoxSize() == this.boxSize)
+				return;
+			numbersPanel.setBoxSize(this.boxSize);
+			numbersPanel.setInitialGame(Game.EASY);
+		}
+	}
+
 	/**
 	 * This action listener set a new Game when the player chooses a difficulty
-	 * level Easy - adds 20 additional numbers to the hardest level Medium -
-	 * adds 10 additional numbers to the hardest level Hard - does not add any
-	 * additional numbers to the generated game by the generator which is the
-	 * hardest level
+	 * level Easy - solved with singles, Medium - needs locked candidates or
+	 * subsets, Hard - needs fish, wings or chains, Expert - needs guessing
+	 * (see Game.getMinRating). The game is generated in the background, the
+	 * timekeeper is restarted by the NewGameTimerListener once it is on the
+	 * board.
 	 * 
 	 * @author Ivo Ivanov
 	 *
@@ -116,19 +259,30 @@ public class MenuBar extends JMenuBar {
 		public void actionPerformed(ActionEvent e) {
 			String difficulty = (String) ((JMenuItem) e.getSource()).getText();
 			if (difficulty.equalsIgnoreCase("Easy")) {
-				numbersPanel.setInitialGame(20);
-				timeKeeper.restart();
+				numbersPanel.setInitialGame(Game.EASY);
 			} else if (difficulty.equalsIgnoreCase("Medium")) {
-				numbersPanel.setInitialGame(10);
-				timeKeeper.restart();	
+				numbersPanel.setInitialGame(Game.MEDIUM);
+			} else if (difficulty.equalsIgnoreCase("Hard")) {
+				numbersPanel.setInitialGame(Game.HARD);
 			} else {
-				numbersPanel.setInitialGame(-1); // -1 is used so that no additional numbers are added
-				timeKeeper.restart();
+				numbersPanel.setInitialGame(Game.EXPERT);
 			}
 		}
 
 	}
 	
+	/**
+	 * Restarts the timekeeper when a newly generated game is set on the board
+	 *
+	 */
+	private class NewGameTimerListener implements PropertyChangeListener {
+
+		@Override
+		public void propertyChange(PropertyChangeEvent evt) {
+			timeKeeper.restart();
+		}
+	}
+
 	/**
 	 * An ActionListener for the save game button. An SaveGame object containing the current game, time and solution
 	 * is initialized and serialized to a file chosen by the user 
@@ -153,22 +307,17 @@ public class MenuBar extends JMenuBar {
 		}
 		
 		private void saveGame(JFileChooser saveGameLocation){
+			if (MenuBar.this.numbersPanel.getGame() == null) {
+				return; // The first game is still being generated.
+			}
 			SavedGame savedGame = new SavedGame(MenuBar.this.numbersPanel, timeKeeper);
-			File saveGameFile = new File(saveGameLocation.getSelectedFile()
-					+ ".txt");
-			if (!saveGameFile.exists()) {
-				try {
-					System.out.println("File created: "
-							+ saveGameFile.createNewFile());
-				} catch (IOException ioe) {
-					ioe.printStackTrace();
-				}
+			File saveGameFile = saveGameLocation.getSelectedFile();
+			if (!saveGameFile.getName().endsWith(SaveFormat.EXTENSION)) {
+				saveGameFile = new File(saveGameFile.getPath()
+						+ SaveFormat.EXTENSION);
 			}
-			try (OutputStream os = new FileOutputStream(saveGameFile);
-					ObjectOutputStream oos = new ObjectOutputStream(os)) {
-				oos.writeObject(savedGame);
-			} catch (FileNotFoundException e1) {
-				e1.printStackTrace();
+			try {
+				SaveFormat.write(saveGameFile.toPath(), savedGame);
 			} catch (IOException e1) {
 				e1.printStackTrace();
 			}
@@ -176,7 +325,7 @@ public class MenuBar extends JMenuBar {
 	}
 	
 	/**
-	 * An ActionListener for the load game button in the File menu. An object of type Savedgame is deserialized
+	 * An ActionListener for the load game button in the File menu. An object of type Savedgame is read
 	 * from a file chosen by the user and is set on the numbersPanel of the Sudoku.
 	 * 
 	 * @author Ivo Ivanov
@@ -194,19 +343,15 @@ public class MenuBar extends JMenuBar {
 		public void actionPerformed(ActionEvent e) {
 			JFileChooser loadGameLocation = new JFileChooser();
 			int retrival = loadGameLocation.showOpenDialog(this.numbersPanel);
-			SavedGame loadGame = new SavedGame();
 			if (retrival == JFileChooser.APPROVE_OPTION) {
 				File loadGameFile = loadGameLocation.getSelectedFile();
-				try (InputStream is = new FileInputStream(loadGameFile);
-						ObjectInputStream ois = new ObjectInputStream(is)) {
-					loadGame = (SavedGame)ois.readObject();
-				} catch (FileNotFoundException e1) {
-					e1.printStackTrace();
+				SavedGame loadGame;
+				try {
+					loadGame = SaveFormat.read(loadGameFile.toPath());
 				} catch (IOException e1) {
 					e1.printStackTrace();
-				} catch (ClassNotFoundException e1) {
-					e1.printStackTrace();
-				}		
+					return;
+				}
 				setGame(loadGame);
 				setTimeKeeper(loadGame);				
 			}		
@@ -218,7 +363,7 @@ public class MenuBar extends JMenuBar {
 		 * @param loadGame
 		 */
 		private void setGame (SavedGame loadGame){
-			numbersPanel.setLoadGame(loadGame.getGameCopy(), loadGame.getUserInput(), loadGame.getGame());
+			numbersPanel.setLoadGame(loadGame.getGameCopy(), loadGame.getGame());
 		}
 		
 		/**
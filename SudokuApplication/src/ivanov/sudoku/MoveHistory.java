@@ -0,0 +1,261 @@
+package ivanov.sudoku;
+
+/**
+ * The undo and redo history of the moves made on a board. A move is packed
+ * into a single int holding the cell, the number it had before and the
+ * number it got (see {@link #pack(int, int, int)}), and the moves are kept in
+ * a ring buffer which doubles up to a maximum size; after that every new move
+ * drops the oldest one, so the memory stays bounded however long the game
+ * goes on. Undo and redo take constant time.<br />
+ * Every {@link #SNAPSHOT_INTERVAL} moves a copy of the board is kept, and
+ * {@link #jumpTo(int, Board)} replays the moves from the nearest snapshot or
+ * from the current move, whichever is closer, so a jump replays at most half
+ * an interval of moves while the snapshots around the target are kept.
+ *
+ */
+public class MoveHistory {
+	/** Number of moves between two snapshots of the board. */
+	public static final int SNAPSHOT_INTERVAL = 64;
+	/** Default maximum number of moves kept. */
+	public static final int MAX_MOVES = 1 << 16;
+
+	private final Board board; // Board the moves are made on.
+	private final int maxMoves;
+	private int[] moves;
+	private int first; // Index of the oldest kept move.
+	private int end; // Index after the newest move.
+	private int position; // Index after the last move not undone.
+	private final Board[] snapshots; // Board after a multiple of the interval.
+	private final int[] snapshotIndices; // Index of each snapshot, -1 if none.
+
+	/**
+	 * Creates an empty history of given board which keeps up to
+	 * {@link #MAX_MOVES} moves.
+	 */
+	public MoveHistory(Board board) {
+		this(board, MAX_MOVES);
+	}
+
+	/**
+	 * Creates an empty history of given board.
+	 *
+	 * @param board
+	 *            - the board the moves are made on; it is read to take the
+	 *            snapshots
+	 * @param maxMoves
+	 *            - the maximum number of moves kept, a power of 2 of at least
+	 *            the snapshot interval
+	 */
+	public MoveHistory(Board board, int maxMoves) {
+		if (Integer.bitCount(maxMoves) != 1 || maxMoves < SNAPSHOT_INTERVAL)
+			throw new IllegalArgumentException("Invalid maximum: " + maxMoves);
+		this.board = board;
+		this.maxMoves = maxMoves;
+		this.moves = new int[SNAPSHOT_INTERVAL];
+		this.snapshots = new Board[maxMoves / SNAPSHOT_INTERVAL];
+		this.snapshotIndices = new int[this.snapshots.length];
+		this.clear();
+	}
+
+	/**
+	 * Forgets all moves, the board as it is becomes the start of the history.
+	 */
+	public void clear() {
+		this.first = 0;
+		this.end = 0;
+		this.position = 0;
+		for (int i = 0; i < this.snapshotIndices.length; i++) {
+			this.snapshotIndices[i] = -1;
+		}
+		this.takeSnapshot();
+	}
+
+	/**
+	 * Records a move which has just been made on the board. The moves which
+	 * were undone are forgotten.
+	 *
+	 * @param cell
+	 *            - the index of the cell in row order
+	 * @param oldNumber
+	 *            - the number the cell had, 0 if it was empty
+	 * @param newNumber
+	 *            - the number the cell got, 0 if it was emptied
+	 */
+	public void record(int cell, int oldNumber, int newNumber) {
+		if (this.position < this.end) {
+			this.end = this.position;
+			for (int i = 0; i < this.snapshotIndices.length; i++) {
+				if (this.snapshotIndices[i] > this.end)
+					this.snapshotIndices[i] = -1;
+			}
+		}
+		if (this.end - this.first == this.moves.length) {
+			if (this.moves.length < this.maxMoves) {
+				this.grow();
+			} else {
+				this.first++; // Overwritten below.
+			}
+		}
+		this.moves[this.end & (this.moves.length - 1)] = pack(cell, oldNumber,
+				newNumber);
+		this.end++;
+		this.position = this.end;
+		if (this.end % SNAPSHOT_INTERVAL == 0)
+			this.takeSnapshot();
+	}
+
+	public boolean canUndo() {
+		return this.position > this.first;
+	}
+
+	public boolean canRedo() {
+		return this.position < this.end;
+	}
+
+	/**
+	 * Steps back over the last move, which the caller reverts on the board.
+	 *
+	 * @return the packed move, see {@link #getCell(int)}
+	 * @throws IllegalStateException
+	 *             if there is no move to undo
+	 */
+	public int undo() {
+		if (!this.canUndo())
+			throw new IllegalStateException("Nothing to undo");
+		this.position--;
+		return this.moves[this.position & (this.moves.length - 1)];
+	}
+
+	/**
+	 * Steps forward over the last undone move, which the caller makes again
+	 * on the board.
+	 *
+	 * @return the packed move, see {@link #getCell(int)}
+	 * @throws IllegalStateException
+	 *             if there is no move to redo
+	 */
+	public int redo() {
+		if (!this.canRedo())
+			throw new IllegalStateException("Nothing to redo");
+		return this.moves[this.position++ & (this.moves.length - 1)];
+	}
+
+	/**
+	 * Returns the index of the oldest move which can be reached, the start of
+	 * the game unless old moves were dropped.
+	 */
+	public int getFirst() {
+		return this.first;
+	}
+
+	/**
+	 * Returns the index after the newest move.
+	 */
+	public int getEnd() {
+		return this.end;
+	}
+
+	/**
+	 * Returns the index after the last move which was not undone.
+	 */
+	public int getPosition() {
+		return this.position;
+	}
+
+	/**
+	 * Computes the board as it was after given number of moves and makes it
+	 * the current move. The moves are replayed from the current board or
+	 * from the nearest snapshot, whichever is closer.
+	 *
+	 * @param index
+	 *            - from {@link #getFirst()} to {@link #getEnd()}
+	 * @param target
+	 *            - receives the board, the caller then shows it
+	 * @throws IllegalArgumentException
+	 *             if the index cannot be reached
+	 */
+	public void jumpTo(int index, Board target) {
+		if (index < this.first || index > this.end)
+			throw new IllegalArgumentException("Move out of range: " + index);
+		int from = this.position;
+		Board source = this.board;
+		int nearest = (index + SNAPSHOT_INTERVAL / 2) / SNAPSHOT_INTERVAL
+				* SNAPSHOT_INTERVAL;
+		for (int snapshot = nearest - SNAPSHOT_INTERVAL; snapshot <= nearest
+				+ SNAPSHOT_INTERVAL; snapshot += SNAPSHOT_INTERVAL) {
+			Board board = this.getSnapshot(snapshot);
+			if (board != null
+					&& Math.abs(index - snapshot) < Math.abs(index - from)) {
+				from = snapshot;
+				source = board;
+			}
+		}
+		target.copyFrom(source);
+		for (; from < index; from++) {
+			int move = this.moves[from & (this.moves.length - 1)];
+			target.set(getCell(move), getNewNumber(move));
+		}
+		for (; from > index; from--) {
+			int move = this.moves[(from - 1) & (this.moves.length - 1)];
+			target.set(getCell(move), getOldNumber(move));
+		}
+		this.position = index;
+	}
+
+	/**
+	 * Packs a move into an int: 10 bits for the cell and 5 bits for each
+	 * number, enough for a 25x25 board.
+	 */
+	public static int pack(int cell, int oldNumber, int newNumber) {
+		return cell << 10 | oldNumber << 5 | newNumber;
+	}
+
+	public static int getCell(int move) {
+		return move >>> 10;
+	}
+
+	public static int getOldNumber(int move) {
+		return move >>> 5 & 0x1F;
+	}
+
+	public static int getNewNumber(int move) {
+		return move & 0x1F;
+	}
+
+	/**
+	 * Returns the snapshot taken after given number of moves, or null if it
+	 * is not kept or not within the moves which can be reached.
+	 */
+	private Board getSnapshot(int index) {
+		if (index < this.first || index > this.end)
+			return null;
+		int slot = index / SNAPSHOT_INTERVAL % this.snapshots.length;
+		return this.snapshotIndices[slot] == index ? this.snapshots[slot]
+				: null;
+	}
+
+	/**
+	 * Copies the board as the snapshot of the current move.
+	 */
+	private void takeSnapshot() {
+		int slot = this.end / SNAPSHOT_INTERVAL % this.snapshots.length;
+		if (this.snapshots[slot] == null) {
+			this.snapshots[slot] = new Board(this.board);
+		} else {
+			this.snapshots[slot].copyFrom(this.board);
+		}
+		this.snapshotIndices[slot] = this.end;
+	}
+
+	/**
+	 * Doubles the ring buffer, keeping the moves at their indices.
+	 */
+	private void grow() {
+		int[] moves = new int[this.moves.length * 2];
+		for (int i = this.first; i < this.end; i++) {
+			moves[i & (moves.length - 1)] = this.moves[i
+					& (this.moves.length - 1)];
+		}
+		this.moves = moves;
+	}
+}
@@ -2,250 +2,759 @@ package ivanov.sudoku;
 
 import java.awt.Color;
 import java.awt.Font;
-import java.awt.GridLayout;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.Arrays;
-import javax.swing.JFormattedTextField;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
 import javax.swing.JPanel;
-import javax.swing.JTextField;
-import javax.swing.text.MaskFormatter;
+import javax.swing.SwingWorker;
 
 /**
- * A class which creates the Sudoku board and inputs a game (fills in the
+ * A class which draws the Sudoku board and inputs a game (fills in the
  * numbers generated from the Game, or loaded by the user) on the board. The
- * class also gathers the input from the user.
- * 
+ * class also gathers the input from the user.<br />
+ * The board is a single component which paints its cells itself. A cell is
+ * selected with the mouse or the arrow keys, a number is typed with its digit
+ * or letter (see {@link PuzzleFormat#symbol(int)}) and removed with Delete,
+ * Backspace or 0. With Shift or Ctrl held the number is toggled as a pencil
+ * mark instead, the pencil marks of a cell are drawn while it is empty. A
+ * change repaints only the rectangles of the cells it touches, and the fonts
+ * and the positions of the symbols are kept until the size of the cells
+ * changes.<br />
+ * New games are taken from a puzzle library when the system property
+ * <code>sudoku.library</code> names a {@link PuzzleLibrary} file, or one is
+ * set with {@link #setPuzzleLibrary(PuzzleLibrary)}. In variant mode, which
+ * is on unless the system property <code>sudoku.variants</code> is false,
+ * library games are transformed into variants and a variant of a built-in
+ * game is used when the game pool is empty, so New Game never waits for the
+ * generator (see {@link PuzzleVariants}).<br />
+ * The board is 9x9 unless another box size is set with
+ * {@link #setBoxSize(int)}; games of larger boards are always generated, as
+ * the library, the pool and the variants only hold 9x9 games.<br />
+ * Cells which repeat a number of their row, column or block are highlighted
+ * as the user types (see {@link ConflictTracker}), and the cells which differ
+ * from the solution are tracked the same way, so neither the highlighting nor
+ * {@link #checkGame()} goes over the whole board.<br />
+ * The candidates of the empty cells can be shown in place of the pencil
+ * marks, and {@link #showHint()} highlights the cells of the next logical
+ * deduction; both come from a {@link HintEngine} updated with every change.
+ * The numbers input by the user can be undone and redone, see
+ * {@link MoveHistory}.
+ *
  * @author Ivo Ivanov
  *
  */
 
 public class NumbersPanel extends JPanel {
-	private JFormattedTextField[][] numberFields;
-	private boolean[][] userInput;
-	private JPanel[][] panels;
+	/** Bound property fired when a game starts or stops being generated. */
+	public static final String GENERATING_PROPERTY = "generating";
+	/** Bound property fired when a generated game is set on the board. */
+	public static final String NEW_GAME_PROPERTY = "newGame";
+
+	private static final int MARGIN = 5; // Space around the board.
+	private static final Color SELECTED = new Color(0xBBDDFF);
+	private static final Color PENCIL = Color.GRAY;
+	private static final Color HINTED = new Color(0xFFF0A0);
+
+	private int boxSize = Board.BOX_SIZE;
+	private Board board; // Current numbers, updated as the user types.
+	private int[] pencilMarks; // Mask of the pencil marks of every cell.
+	private ConflictTracker conflicts; // Conflicts of the current numbers.
+	private int[] changed; // Cells whose conflicts changed with a keystroke.
+	private final BitSet mistakes = new BitSet(); // Cells unlike the solution.
+	private final BitSet checked = new BitSet(); // Wrong cells shown in red.
+	private HintEngine hints; // Candidates of the current numbers.
+	private final Hint hint = new Hint(); // Last hint shown.
+	private final BitSet hinted = new BitSet(); // Cells of the last hint.
+	private boolean showCandidates;
+	private MoveHistory history; // Moves of the user on the current game.
+	private int selected; // Index of the selected cell.
 	private Game game;
+	private GameGenerator generator; // Game being generated, if any.
+	private GamePool gamePool;
+	private PuzzleLibrary library; // Source of ready games, if any.
+	private final Random random = new Random(); // Picks ready games.
+	private boolean variantMode = Boolean.parseBoolean(System.getProperty(
+			"sudoku.variants", "true"));
+
+	// Geometry and fonts, computed again when the size of the cells changes.
+	private int cellSize;
+	private int left;
+	private int top;
+	private Font numberFont;
+	private Font pencilFont;
+	private String[] symbols; // Text of every number.
+	private int[] numberX; // Offset of every number within its cell.
+	private int numberY;
+	private int[] pencilX; // Offset of every pencil mark within its slot.
+	private int pencilY;
 
 	public NumbersPanel() {
-		this.setLayout(new GridLayout(3, 3, 5, 5));
-		this.setPanels();
-		this.setCells();
-		this.userInput = new boolean[9][9];
+		this.setBoardModel(new Board());
+		this.setBackground(Color.WHITE);
+		this.setFocusable(true);
+		this.addKeyListener(new BoardKeyListener());
+		this.addMouseListener(new SelectionListener());
+		String library = System.getProperty("sudoku.library");
+		if (library != null) {
+			try {
+				this.library = PuzzleLibrary.open(Paths.get(library));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		this.gamePool = new GamePool();
+		this.gamePool.start();
 		this.setInitialGame(20); // Initial difficulty set to 20 which
 									// translates to easy
 	}
 
 	/**
-	 * Creates the 9 panels for each block of numbers
+	 * Replaces the board and everything kept per cell with empty ones of the
+	 * size of given board
 	 */
-	private void setPanels() {
-		this.panels = new JPanel[3][3];
-		for (int i = 0; i < panels.length; i++) {
-			for (int j = 0; j < panels[i].length; j++) {
-				panels[i][j] = new JPanel(new GridLayout(3, 3));
-				this.add(panels[i][j]);
-			}
-		}
-	}
-
-	/**
-	 * Creates the two dimensional array of TextFields to hold the number of the
-	 * Sudoku Each TextField is placed on its respective JPanel (block)
-	 */
-	private void setCells() {
-		MaskFormatter f = createFormatter("#"); // the MaskFormatter is used to
-												// specify what can be input in
-												// the Text Fields
-		f.setValidCharacters("123456789");
-		this.numberFields = new JFormattedTextField[9][9];
-		for (int i = 0; i < numberFields.length; i++) {
-			for (int j = 0; j < numberFields[i].length; j++) {
-				numberFields[i][j] = new JFormattedTextField(f);
-				numberFields[i][j].addKeyListener(new DeleteValueListener(
-						this.numberFields[i][j]));// adds an ActionListener used
-													// to delete the value from
-													// a textfield which is
-													// intended for user input
-				panels[i / 3][j / 3].add(numberFields[i][j]);
-			}
+	private void setBoardModel(Board board) {
+		this.board = board;
+		this.boxSize = board.getBoxSize();
+		this.pencilMarks = new int[board.getCellCount()];
+		this.conflicts = new ConflictTracker(this.boxSize);
+		this.changed = new int[this.conflicts.getMaxChanged()];
+		this.hints = new HintEngine(this.boxSize);
+		this.history = new MoveHistory(board);
+		this.mistakes.clear();
+		this.checked.clear();
+		this.hinted.clear();
+		this.selected = 0;
+		this.symbols = new String[board.getSize() + 1];
+		for (int number = 1; number <= board.getSize(); number++) {
+			this.symbols[number] = String.valueOf(PuzzleFormat.symbol(number));
 		}
+		this.cellSize = 0; // Lays the board out again.
 	}
 
 	/**
-	 * Creates a new Sudoku game and inputs the numbers in the Number Fields
+	 * Sets a new Sudoku game on the board. A game is taken from the puzzle
+	 * library or a ready game from the game pool when there is one, or in
+	 * variant mode a variant of a built-in game. Otherwise it is generated in
+	 * the background and the numbers are input on the board once the game is
+	 * ready; a game which is still being generated is cancelled and replaced
+	 * by the new one.
 	 *
 	 * @param difficulty
 	 *            - a parameter indicating the difficulty of the the game
 	 */
 	public void setInitialGame(int dificulty) {
-		this.clearNumberFields();
-		for (int i = 0; i < this.userInput.length; i++) {
-			Arrays.fill(userInput[i], true);
+		this.cancelGeneration();
+		if (this.boxSize != Board.BOX_SIZE) {
+			this.generate(dificulty);
+			return;
+		}
+		Game readyGame = this.library != null ? this.library.random(
+				dificulty, this.random) : null;
+		if (readyGame != null && this.variantMode)
+			readyGame = PuzzleTransform.random(this.random).apply(readyGame);
+		if (readyGame == null)
+			readyGame = this.gamePool.take(dificulty);
+		if (readyGame == null && this.variantMode)
+			readyGame = PuzzleVariants.variant(dificulty, this.random);
+		if (readyGame != null) {
+			this.setGeneratedGame(readyGame);
+			return;
 		}
-		this.game = new Game(dificulty);
-		for (int i = 0; i < numberFields.length; i++) {
-			for (int j = 0; j < numberFields[i].length; j++) {
+		this.generate(dificulty);
+	}
 
-				if (game.getNumber(j, i) > 0)
-					this.userInput[i][j] = false;
-				this.setNumberInField(j, i, game.getNumber(j, i),
-						this.userInput[i][j]);
+	/**
+	 * Starts generating a game of the current box size in the background.
+	 */
+	private void generate(int dificulty) {
+		this.generator = new GameGenerator(dificulty, this.boxSize);
+		this.firePropertyChange(GENERATING_PROPERTY, false, true);
+		this.generator.execute();
+	}
 
-			}
+	/**
+	 * Changes the size of the board, which is empty until a game is set.
+	 *
+	 * @param boxSize
+	 *            - the box size, 3 for a 9x9 board, 4 for 16x16 or 5 for
+	 *            25x25
+	 */
+	public void setBoxSize(int boxSize) {
+		if (boxSize == this.boxSize)
+			return;
+		this.cancelGeneration();
+		this.setBoardModel(new Board(boxSize)); // Checks the box size.
+		this.game = null;
+		this.repaint();
+	}
+
+	public int getBoxSize() {
+		return this.boxSize;
+	}
+
+	/**
+	 * Cancels the game which is being generated, if any. The current game
+	 * stays on the board.
+	 */
+	public void cancelGeneration() {
+		if (this.generator != null) {
+			this.generator.cancel(true);
+			this.generator = null;
+			this.firePropertyChange(GENERATING_PROPERTY, true, false);
 		}
 	}
 
+	public boolean isGenerating() {
+		return this.generator != null;
+	}
+
+	/**
+	 * Inputs the numbers of a newly generated game on the board
+	 *
+	 * @param game
+	 *            - the generated game
+	 */
+	private void setGeneratedGame(Game game) {
+		this.applyBoard(game.getGame(), game);
+		this.firePropertyChange(NEW_GAME_PROPERTY, null, game);
+	}
+
 	/**
 	 * a method used to load a game to the Numbers Panel
-	 * 
+	 *
 	 * @param game
-	 *            - an array of the current game to be set on the Sudoku board
-	 * @param userInput
-	 *            - a boolean matrix indicating whether the current cells is
-	 *            intended for the user ot input
+	 *            - the board of the current game to be set on the Sudoku
+	 *            board, including which cells are intended for the user to
+	 *            input
 	 * @param savedGame
 	 *            - an object of type SavedGame, set as a instance field of the
 	 *            NumbersPanel
 	 */
 
-	public void setLoadGame(int[][] game, boolean[][] userInput, Game savedGame) {
-		this.userInput = userInput;
-		this.game = savedGame;
-		this.clearNumberFields();
-		for (int i = 0; i < numberFields.length; i++) {
-			for (int j = 0; j < numberFields[i].length; j++) {
-				this.setNumberInField(j, i, game[i][j], userInput[i][j]);
+	public void setLoadGame(Board game, Game savedGame) {
+		this.cancelGeneration();
+		this.applyBoard(game, savedGame);
+	}
+
+	/**
+	 * Inputs the numbers of a game on the board in one batch. Only the cells
+	 * whose number or given mark differ from the displayed board, or which
+	 * show pencil marks or the red of the last check, are changed, and the
+	 * rectangle around the changed cells is repainted once at the end. The
+	 * cells which differ from the solution are marked, from then on they are
+	 * updated as the user types.
+	 *
+	 * @param board
+	 *            - the board to be set
+	 * @param game
+	 *            - the game the board belongs to
+	 */
+	private void applyBoard(Board board, Game game) {
+		// Replaces the board model only when the size changes.
+		this.setBoxSize(board.getBoxSize());
+		this.game = game;
+		Board solution = game.getSolution();
+		Rectangle dirty = new Rectangle();
+		for (int i = 0; i < board.getCellCount(); i++) {
+			int number = board.get(i);
+			boolean given = board.isGiven(i);
+			this.mistakes.set(i, number != solution.get(i));
+			if (number == this.board.get(i) && given == this.board.isGiven(i)
+					&& this.pencilMarks[i] == 0 && !this.checked.get(i))
+				continue;
+			this.board.set(i, number);
+			this.board.setGiven(i, given);
+			this.pencilMarks[i] = 0;
+			this.hints.set(i, number);
+			this.addCell(dirty, i);
+			int count = this.conflicts.set(i, number, this.changed);
+			for (int j = 0; j < count; j++) {
+				this.addCell(dirty, this.changed[j]);
 			}
 		}
+		this.checked.clear();
+		this.history.clear();
+		if (!this.hinted.isEmpty() || (this.showCandidates && !dirty.isEmpty())) {
+			this.hinted.clear();
+			this.repaint(); // Any cell may show other candidates.
+		} else if (!dirty.isEmpty()) {
+			this.repaint(dirty);
+		}
 	}
 
 	/**
-	 * method which formats the Number fields
-	 * 
-	 * @param x
-	 *            - the coordinate on the x axis
-	 * @param y
-	 *            - the coordinate on the y axis
+	 * Inputs a number of the user in a cell, unless the cell is given by the
+	 * game, and repaints the cells whose state changed
+	 *
+	 * @param position
+	 *            - the index of the cell in row order
 	 * @param number
-	 *            - the number to be input in the field
-	 * @param userInput
-	 *            - a boolean which indicates whether the number is inputed by
-	 *            the user or by the game generator
-	 * 
-	 * */
-
-	public void setNumberInField(int x, int y, int number, boolean userInput) {
-		this.numberFields[y][x].setFont(new Font("SansSerif", Font.BOLD, 20));
-		this.numberFields[y][x].setHorizontalAlignment(JTextField.CENTER);
-		if (number > 0) {
-			this.numberFields[y][x].setValue(new Integer(number));
+	 *            - the number, 0 to empty the cell
+	 */
+	public void setNumber(int position, int number) {
+		if (this.board.isGiven(position) || this.board.get(position) == number)
+			return;
+		int old = this.board.get(position);
+		this.changeNumber(position, number);
+		this.history.record(position, old, number); // May copy the board.
+	}
+
+	/**
+	 * Undoes the last move of the user which was not undone yet, and selects
+	 * its cell
+	 *
+	 * @return false if there is no move to undo
+	 */
+	public boolean undo() {
+		if (!this.history.canUndo())
+			return false;
+		int move = this.history.undo();
+		this.changeNumber(MoveHistory.getCell(move),
+				MoveHistory.getOldNumber(move));
+		this.select(MoveHistory.getCell(move));
+		return true;
+	}
+
+	/**
+	 * Makes the last undone move again, and selects its cell
+	 *
+	 * @return false if there is no move to redo
+	 */
+	public boolean redo() {
+		if (!this.history.canRedo())
+			return false;
+		int move = this.history.redo();
+		this.changeNumber(MoveHistory.getCell(move),
+				MoveHistory.getNewNumber(move));
+		this.select(MoveHistory.getCell(move));
+		return true;
+	}
+
+	/**
+	 * Sets the numbers as they were after given number of moves of the user,
+	 * the moves after it can still be redone
+	 *
+	 * @param index
+	 *            - from the first move kept by the history, 0 unless old
+	 *            moves were dropped, to the number of moves made
+	 */
+	public void goToMove(int index) {
+		Board target = new Board(this.board);
+		this.history.jumpTo(index, target);
+		for (int i = 0; i < target.getCellCount(); i++) {
+			if (target.get(i) != this.board.get(i))
+				this.changeNumber(i, target.get(i));
+		}
+	}
+
+	public MoveHistory getHistory() {
+		return this.history;
+	}
+
+	/**
+	 * Changes the number of a cell and everything which depends on it, and
+	 * repaints the cells whose state changed
+	 */
+	private void changeNumber(int position, int number) {
+		this.board.set(position, number);
+		if (this.game != null) {
+			this.mistakes.set(position,
+					number != this.game.getSolution().get(position));
+		}
+		this.checked.clear(position);
+		this.hints.set(position, number);
+		this.clearHint();
+		int count = this.conflicts.set(position, number, this.changed);
+		for (int i = 0; i < count; i++) {
+			this.repaintCell(this.changed[i]);
 		}
-		if (number > 0 && !userInput) {
-			this.numberFields[y][x].setEditable(false);
-			this.numberFields[y][x].setBackground(Color.BLACK);
-			this.numberFields[y][x].setForeground(Color.WHITE);
+		if (this.showCandidates) {
+			this.repaintUnits(position);
+		} else {
+			this.repaintCell(position);
 		}
 	}
 
 	/**
-	 * an internal method to clear all the number fields
+	 * Turns the candidates of the empty cells on or off, they are shown in
+	 * the cells without pencil marks.
 	 */
+	public void setShowCandidates(boolean showCandidates) {
+		this.showCandidates = showCandidates;
+		this.repaint();
+	}
 
-	private void clearNumberFields() {
-		for (int i = 0; i < numberFields.length; i++) {
-			for (int j = 0; j < numberFields[i].length; j++) {
-				this.numberFields[i][j].setValue(null);
-				this.numberFields[i][j].setBackground(Color.WHITE);
-				this.numberFields[i][j].setForeground(Color.BLACK);
-				this.numberFields[i][j].setEditable(true);
-			}
+	public boolean isShowCandidates() {
+		return this.showCandidates;
+	}
+
+	/**
+	 * Highlights the cells of the next logical deduction and selects the
+	 * first of them. The candidates removed by the deduction disappear from
+	 * the shown candidates.
+	 *
+	 * @return the deduction, or null if none is found: the board is not 9x9,
+	 *         contains a number which contradicts another, or needs trial and
+	 *         error. The hint is reused by the next call.
+	 */
+	public Hint showHint() {
+		this.clearHint();
+		if (!this.hints.findHint(this.hint))
+			return null;
+		for (int i = 0; i < this.hint.getCellCount(); i++) {
+			this.hinted.set(this.hint.getCell(i));
+			this.repaintCell(this.hint.getCell(i));
+		}
+		this.select(this.hint.getCell(0));
+		return this.hint;
+	}
+
+	/**
+	 * Removes the highlight of the last hint.
+	 */
+	private void clearHint() {
+		for (int i = this.hinted.nextSetBit(0); i >= 0; i = this.hinted
+				.nextSetBit(i + 1)) {
+			this.repaintCell(i);
 		}
+		this.hinted.clear();
 	}
 
 	/**
-	 * calls the check method of the Game instance and colors the wrong input
-	 * (the cells where the user inputted wrong numbers) by the user in red
-	 * 
+	 * Adds or removes a pencil mark of a cell of the user
+	 *
+	 * @param position
+	 *            - the index of the cell in row order
+	 * @param number
+	 *            - the number of the pencil mark
+	 */
+	public void togglePencilMark(int position, int number) {
+		if (this.board.isGiven(position))
+			return;
+		this.pencilMarks[position] ^= ConstraintModel.bit(number);
+		if (this.board.get(position) == 0)
+			this.repaintCell(position);
+	}
+
+	/**
+	 * Returns the mask of the pencil marks of a cell, where bit (n - 1) is set
+	 * if n is marked
+	 */
+	public int getPencilMarks(int position) {
+		return this.pencilMarks[position];
+	}
+
+	/**
+	 * Selects a cell, the cell which was selected before is repainted as well
+	 */
+	public void select(int position) {
+		if (position == this.selected)
+			return;
+		this.repaintCell(this.selected);
+		this.selected = position;
+		this.repaintCell(position);
+	}
+
+	public int getSelected() {
+		return this.selected;
+	}
+
+	/**
+	 * colors the wrong input (the cells where the user inputted wrong numbers
+	 * or left empty) in red, until the cells are changed. The wrong cells are
+	 * kept up to date as the user types, so only they are visited.
+	 *
 	 * @return boolean variable indicating whether the whole game was correct or
-	 *         not
+	 *         not, false while there is no game on the board
 	 */
 	public boolean checkGame() {
-		boolean[][] checkMatrix = this.game.checkUserGame(this.getUserGame());
-		boolean checkWholeGame = true;
-		for (int i = 0; i < numberFields.length; i++) {
-			for (int j = 0; j < numberFields[i].length; j++) {
-				if (!checkMatrix[i][j]) {
-					checkWholeGame = false;
-					this.numberFields[i][j].setBackground(Color.RED);
-				}
-			}
+		if (this.game == null)
+			return false; // No game is generated yet for this board.
+		for (int i = this.mistakes.nextSetBit(0); i >= 0; i = this.mistakes
+				.nextSetBit(i + 1)) {
+			this.checked.set(i);
+			this.repaintCell(i);
 		}
-		return checkWholeGame;
+		return this.mistakes.isEmpty();
 	}
 
 	/**
-	 * Gets all the numbers from the Sudoku board
-	 * 
-	 * @return a two dimensional array with the all of the numbers in the Sudoku
-	 *         board
+	 * Gets all the numbers from the Sudoku board. The numbers are read from
+	 * the board model kept up to date while the user types.
+	 *
+	 * @return a copy of the board with all of the numbers in the Sudoku board
+	 *         and the cells given by the game
 	 */
 
-	public int[][] getUserGame() {
-		int[][] userGame = new int[9][9];
-		for (int i = 0; i < numberFields.length; i++) {
-			for (int j = 0; j < numberFields[i].length; j++) {
-				if (this.numberFields[i][j].getValue() != null) {
-					userGame[i][j] = Integer
-							.parseInt((String) this.numberFields[i][j]
-									.getText());
-				} else {
-					userGame[i][j] = 0;
-				}
-			}
-		}
-		return userGame;
+	public Board getUserGame() {
+		return new Board(this.board);
+	}
+
+	/**
+	 * Sets the library new games are taken from, null to generate them.
+	 */
+	public void setPuzzleLibrary(PuzzleLibrary library) {
+		this.library = library;
 	}
 
-	public boolean[][] getUserInput() {
-		return this.userInput;
+	public PuzzleLibrary getPuzzleLibrary() {
+		return this.library;
+	}
+
+	/**
+	 * Turns variant mode on or off, see {@link #setInitialGame(int)}.
+	 */
+	public void setVariantMode(boolean variantMode) {
+		this.variantMode = variantMode;
+	}
+
+	public boolean isVariantMode() {
+		return this.variantMode;
+	}
+
+	public GamePool getGamePool() {
+		return this.gamePool;
 	}
 
 	public Game getGame() {
 		return this.game;
 	}
 
-	public JFormattedTextField getNumberField(int x, int y) {
-		return this.numberFields[y][x];
+	/**
+	 * Paints the cells within the clip of the graphics and the lines between
+	 * them, the lines between the blocks are thicker
+	 */
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		this.layoutBoard();
+		int size = this.board.getSize();
+		Rectangle clip = g.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(0, 0, this.getWidth(), this.getHeight());
+		int firstX = Math.max(0, (clip.x - this.left) / this.cellSize);
+		int firstY = Math.max(0, (clip.y - this.top) / this.cellSize);
+		int lastX = Math.min(size - 1, (clip.x + clip.width - this.left)
+				/ this.cellSize);
+		int lastY = Math.min(size - 1, (clip.y + clip.height - this.top)
+				/ this.cellSize);
+		for (int y = firstY; y <= lastY; y++) {
+			for (int x = firstX; x <= lastX; x++) {
+				this.paintCell(g, y * size + x);
+			}
+		}
+		int length = size * this.cellSize;
+		for (int i = 0; i <= size; i++) {
+			boolean block = i % this.boxSize == 0;
+			g.setColor(block ? Color.BLACK : Color.LIGHT_GRAY);
+			int offset = i * this.cellSize;
+			int width = block ? 2 : 1;
+			g.fillRect(this.left + offset - width / 2, this.top, width, length);
+			g.fillRect(this.left, this.top + offset - width / 2, length, width);
+		}
+	}
+
+	/**
+	 * Paints the background and the number or the pencil marks of a cell
+	 */
+	private void paintCell(Graphics g, int position) {
+		int size = this.board.getSize();
+		int x = this.left + position % size * this.cellSize;
+		int y = this.top + position / size * this.cellSize;
+		boolean given = this.board.isGiven(position);
+		boolean conflict = this.conflicts.isConflict(position);
+		if (given) {
+			g.setColor(Color.BLACK);
+		} else if (this.checked.get(position)) {
+			g.setColor(Color.RED);
+		} else if (conflict) {
+			g.setColor(Color.PINK);
+		} else if (this.hinted.get(position)) {
+			g.setColor(HINTED);
+		} else if (position == this.selected) {
+			g.setColor(SELECTED);
+		} else {
+			g.setColor(Color.WHITE);
+		}
+		g.fillRect(x, y, this.cellSize, this.cellSize);
+		if (position == this.selected && !g.getColor().equals(SELECTED)) {
+			g.setColor(SELECTED);
+			g.drawRect(x + 2, y + 2, this.cellSize - 5, this.cellSize - 5);
+			g.drawRect(x + 3, y + 3, this.cellSize - 7, this.cellSize - 7);
+		}
+		int number = this.board.get(position);
+		if (number > 0) {
+			g.setFont(this.numberFont);
+			g.setColor(given ? (conflict ? Color.RED : Color.WHITE)
+					: Color.BLACK);
+			g.drawString(this.symbols[number], x + this.numberX[number], y
+					+ this.numberY);
+			return;
+		}
+		int marks = this.pencilMarks[position];
+		if (marks == 0 && this.showCandidates)
+			marks = this.hints.getCandidates(position);
+		if (marks == 0)
+			return;
+		g.setFont(this.pencilFont);
+		g.setColor(PENCIL);
+		int slot = this.cellSize / this.boxSize;
+		for (; marks != 0; marks &= marks - 1) {
+			int mark = ConstraintModel.lowest(marks);
+			g.drawString(this.symbols[mark], x + (mark - 1) % this.boxSize
+					* slot + this.pencilX[mark], y + (mark - 1) / this.boxSize
+					* slot + this.pencilY);
+		}
+	}
+
+	/**
+	 * Computes the size and the position of the cells for the current size of
+	 * the panel, and the fonts and the offsets of the symbols when the size
+	 * of the cells changed
+	 */
+	private void layoutBoard() {
+		int size = this.board.getSize();
+		int cellSize = Math.max(this.boxSize, (Math.min(this.getWidth(),
+				this.getHeight()) - 2 * MARGIN) / size);
+		this.left = (this.getWidth() - cellSize * size) / 2;
+		this.top = (this.getHeight() - cellSize * size) / 2;
+		if (cellSize == this.cellSize)
+			return;
+		this.cellSize = cellSize;
+		int slot = cellSize / this.boxSize;
+		this.numberFont = new Font("SansSerif", Font.BOLD, cellSize * 3 / 5);
+		this.pencilFont = new Font("SansSerif", Font.PLAIN, slot * 4 / 5);
+		FontMetrics numberMetrics = this.getFontMetrics(this.numberFont);
+		FontMetrics pencilMetrics = this.getFontMetrics(this.pencilFont);
+		this.numberX = new int[size + 1];
+		this.pencilX = new int[size + 1];
+		for (int number = 1; number <= size; number++) {
+			this.numberX[number] = (cellSize - numberMetrics
+					.stringWidth(this.symbols[number])) / 2;
+			this.pencilX[number] = (slot - pencilMetrics
+					.stringWidth(this.symbols[number])) / 2;
+		}
+		this.numberY = (cellSize - numberMetrics.getHeight()) / 2
+				+ numberMetrics.getAscent();
+		this.pencilY = (slot - pencilMetrics.getHeight()) / 2
+				+ pencilMetrics.getAscent();
 	}
 
 	/**
-	 * Class to specify that only single digit numbers can be input in the
-	 * NumberFields
-	 * 
-	 * @param s
-	 *            - the string which should be input
-	 * @return an object of type MaskFormatter
+	 * Returns the cell at a point of the panel, or -1 if the point is outside
+	 * the board
 	 */
-	protected MaskFormatter createFormatter(String s) {
-		MaskFormatter formatter = null;
-		try {
-			formatter = new MaskFormatter(s);
-		} catch (java.text.ParseException exc) {
-			System.err.println("formatter is bad: " + exc.getMessage());
+	private int cellAt(int px, int py) {
+		this.layoutBoard();
+		int size = this.board.getSize();
+		if (px < this.left || py < this.top)
+			return -1;
+		int x = (px - this.left) / this.cellSize;
+		int y = (py - this.top) / this.cellSize;
+		return x < size && y < size ? y * size + x : -1;
+	}
+
+	/**
+	 * Adds the rectangle of a cell, with the edge of the lines around it, to
+	 * a region to be repainted
+	 */
+	private void addCell(Rectangle region, int position) {
+		this.layoutBoard();
+		int size = this.board.getSize();
+		int x = this.left + position % size * this.cellSize - 1;
+		int y = this.top + position / size * this.cellSize - 1;
+		if (region.isEmpty()) {
+			region.setBounds(x, y, this.cellSize + 2, this.cellSize + 2);
+		} else {
+			region.add(x, y);
+			region.add(x + this.cellSize + 2, y + this.cellSize + 2);
 		}
-		return formatter;
 	}
 
 	/**
-	 * a Listener used to delete the inputed number in the Number field
+	 * Repaints the row, the column and the block of a cell, whose candidates
+	 * change with the number of the cell
+	 */
+	private void repaintUnits(int position) {
+		this.layoutBoard();
+		int size = this.board.getSize();
+		int x = position % size;
+		int y = position / size;
+		int length = size * this.cellSize;
+		int block = this.boxSize * this.cellSize;
+		this.repaint(this.left - 1, this.top + y * this.cellSize - 1,
+				length + 2, this.cellSize + 2);
+		this.repaint(this.left + x * this.cellSize - 1, this.top - 1,
+				this.cellSize + 2, length + 2);
+		this.repaint(this.left + x / this.boxSize * block - 1, this.top + y
+				/ this.boxSize * block - 1, block + 2, block + 2);
+	}
+
+	/**
+	 * Repaints the rectangle of a cell only, with the edge of the lines around
+	 * it
+	 */
+	private void repaintCell(int position) {
+		this.layoutBoard();
+		int size = this.board.getSize();
+		this.repaint(this.left + position % size * this.cellSize - 1, this.top
+				+ position / size * this.cellSize - 1, this.cellSize + 2,
+				this.cellSize + 2);
+	}
+
+	/**
+	 * A SwingWorker which generates a game off the event dispatch thread and
+	 * sets it on the board when it is ready, unless it has been cancelled or
+	 * replaced by a newer game in the meantime.
 	 *
 	 */
-	private class DeleteValueListener implements KeyListener {
-		private JFormattedTextField numberField;
+	private class GameGenerator extends SwingWorker<Game, Void> {
+		private int difficulty;
+		private int boxSize;
+
+		private GameGenerator(int difficulty, int boxSize) {
+			this.difficulty = difficulty;
+			this.boxSize = boxSize;
+		}
+
+		@Override
+		protected Game doInBackground() {
+			return new Game(this.difficulty, new Random(), this.boxSize);
+		}
 
-		private DeleteValueListener(JFormattedTextField numberField) {
-			this.numberField = numberField;
+		@Override
+		protected void done() {
+			if (isCancelled() || generator != this) {
+				return;
+			}
+			generator = null;
+			firePropertyChange(GENERATING_PROPERTY, true, false);
+			try {
+				setGeneratedGame(get());
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
 		}
+	}
+
+	/**
+	 * A KeyListener which moves the selection with the arrow keys and inputs
+	 * the typed numbers in the selected cell, or toggles them as pencil marks
+	 * while Shift or Ctrl is held
+	 *
+	 */
+	private class BoardKeyListener implements KeyListener {
 
 		@Override
 		public void keyTyped(KeyEvent e) {
@@ -253,14 +762,69 @@ public class NumbersPanel extends JPanel {
 
 		@Override
 		public void keyPressed(KeyEvent e) {
-			if (e.getKeyCode() == KeyEvent.VK_BACK_SPACE
-					&& this.numberField.getBackground() != Color.BLACK) {
-				this.numberField.setValue(null);
+			int size = board.getSize();
+			int x = selected % size;
+			int y = selected / size;
+			switch (e.getKeyCode()) {
+			case KeyEvent.VK_LEFT:
+				select(y * size + (x + size - 1) % size);
+				return;
+			case KeyEvent.VK_RIGHT:
+				select(y * size + (x + 1) % size);
+				return;
+			case KeyEvent.VK_UP:
+				select((y + size - 1) % size * size + x);
+				return;
+			case KeyEvent.VK_DOWN:
+				select((y + 1) % size * size + x);
+				return;
+			case KeyEvent.VK_BACK_SPACE:
+			case KeyEvent.VK_DELETE:
+			case KeyEvent.VK_0:
+			case KeyEvent.VK_NUMPAD0:
+				setNumber(selected, 0);
+				return;
+			}
+			int number = this.number(e.getKeyCode());
+			if (number < 1 || number > size)
+				return;
+			if (e.isShiftDown() || e.isControlDown()) {
+				togglePencilMark(selected, number);
+			} else {
+				setNumber(selected, number);
 			}
 		}
 
+		/**
+		 * Returns the number of a digit or letter key, or -1 for other keys
+		 */
+		private int number(int keyCode) {
+			if (keyCode >= KeyEvent.VK_NUMPAD1 && keyCode <= KeyEvent.VK_NUMPAD9)
+				return keyCode - KeyEvent.VK_NUMPAD0;
+			if ((keyCode >= KeyEvent.VK_1 && keyCode <= KeyEvent.VK_9)
+					|| (keyCode >= KeyEvent.VK_A && keyCode <= KeyEvent.VK_Z))
+				return PuzzleFormat.number(keyCode);
+			return -1;
+		}
+
 		@Override
 		public void keyReleased(KeyEvent e) {
 		}
 	}
+
+	/**
+	 * A MouseListener which selects the clicked cell and takes the keyboard
+	 * focus
+	 *
+	 */
+	private class SelectionListener extends MouseAdapter {
+
+		@Override
+		public void mousePressed(MouseEvent e) {
+			requestFocusInWindow();
+			int position = cellAt(e.getX(), e.getY());
+			if (position >= 0)
+				select(position);
+		}
+	}
 }
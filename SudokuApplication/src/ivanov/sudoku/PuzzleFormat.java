@@ -0,0 +1,117 @@
+package ivanov.sudoku;
+
+/**
+ * Reads and writes games in the common one-line format: 81 characters in row
+ * order, the digits 1-9 for the numbers and '0' or '.' for the empty cells.
+ * Anything after the first 81 characters of a line (such as a rating) is
+ * ignored.<br />
+ * Larger boards are written the same way with one character per cell, the
+ * numbers from 10 as the letters from 'A' (see {@link #symbol(int)}).
+ *
+ */
+public class PuzzleFormat {
+	public static final int LENGTH = 81;
+
+	private PuzzleFormat() {
+	}
+
+	/**
+	 * Parses a game from a line.
+	 *
+	 * @param line
+	 *            - the line to parse
+	 * @return the game, the numbers are marked as given
+	 * @throws IllegalArgumentException
+	 *             if the line is too short or contains an invalid character
+	 */
+	public static Board parse(CharSequence line) {
+		if (line.length() < LENGTH)
+			throw new IllegalArgumentException("Expected " + LENGTH
+					+ " characters but got " + line.length());
+		Board game = new Board();
+		for (int i = 0; i < LENGTH; i++) {
+			game.set(i, digit(line.charAt(i)));
+		}
+		game.setGivens();
+		return game;
+	}
+
+	/**
+	 * Parses a game of given box size from a line.
+	 *
+	 * @see #parse(CharSequence)
+	 */
+	public static Board parse(CharSequence line, int boxSize) {
+		Board game = new Board(boxSize);
+		int length = game.getCellCount();
+		if (line.length() < length)
+			throw new IllegalArgumentException("Expected " + length
+					+ " characters but got " + line.length());
+		for (int i = 0; i < length; i++) {
+			int number = number(line.charAt(i));
+			if (number < 0 || number > game.getSize())
+				throw new IllegalArgumentException("Invalid character '"
+						+ line.charAt(i) + "'");
+			game.set(i, number);
+		}
+		game.setGivens();
+		return game;
+	}
+
+	/**
+	 * Returns the number of a character of the format, 0 for an empty cell.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the character is not part of the format
+	 */
+	public static int digit(int c) {
+		if (c >= '1' && c <= '9')
+			return c - '0';
+		if (c == '0' || c == '.')
+			return 0;
+		throw new IllegalArgumentException("Invalid character '" + (char) c
+				+ "'");
+	}
+
+	/**
+	 * Returns the character of a number: '.' for 0, the digits up to 9 and
+	 * the letters from 'A' for 10 and up.
+	 */
+	public static char symbol(int number) {
+		if (number == 0)
+			return '.';
+		return number <= 9 ? (char) ('0' + number)
+				: (char) ('A' + number - 10);
+	}
+
+	/**
+	 * Returns the number of a character returned by {@link #symbol(int)},
+	 * lower case letters are accepted too.
+	 *
+	 * @return the number, 0 for '.' and '0', or -1 for any other character
+	 */
+	public static int number(int c) {
+		if (c >= '1' && c <= '9')
+			return c - '0';
+		if (c >= 'A' && c <= 'Z')
+			return c - 'A' + 10;
+		if (c >= 'a' && c <= 'z')
+			return c - 'a' + 10;
+		return c == '0' || c == '.' ? 0 : -1;
+	}
+
+	/**
+	 * Formats a game as a line, using '.' for the empty cells.
+	 *
+	 * @param game
+	 *            - the game to format
+	 * @return the line of one character per cell, 81 for a standard board
+	 */
+	public static String format(Board game) {
+		StringBuilder line = new StringBuilder(game.getCellCount());
+		for (int i = 0; i < game.getCellCount(); i++) {
+			line.append(symbol(game.get(i)));
+		}
+		return line.toString();
+	}
+}
@@ -0,0 +1,122 @@
+package ivanov.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * A set of games which identifies each game by its canonical form (see
+ * {@link Canonicalizer}), so that a game is found when any equivalent game
+ * was added before. It is used to drop duplicates when games are generated in
+ * bulk or written to a library.<br />
+ * The forms are kept as 6 longs of 4-bit cells in one open addressing table,
+ * about 100 bytes per game, and a lookup takes amortized constant time after
+ * the form is computed. The form is computed by the calling thread outside of
+ * any lock, only the table access is synchronized, so an index may be shared
+ * by the threads of the {@link BulkGenerator}.
+ *
+ */
+public class PuzzleIndex {
+	private static final int WORDS = 6; // Longs per form.
+	private static final long OCCUPIED = 1L << 63; // Set in the last word.
+
+	private long[] table;
+	private int size;
+
+	/**
+	 * Creates an empty index.
+	 */
+	public PuzzleIndex() {
+		this.table = new long[64 * WORDS];
+	}
+
+	/**
+	 * Adds a game unless an equivalent game was added before.
+	 *
+	 * @param game
+	 *            - the game, it is not modified
+	 * @return true if the game was added, false if it is a duplicate
+	 */
+	public boolean add(Board game) {
+		long[] key = key(game);
+		synchronized (this) {
+			int slot = this.find(key);
+			if (this.table[slot + WORDS - 1] != 0)
+				return false;
+			System.arraycopy(key, 0, this.table, slot, WORDS);
+			if (++this.size * 2 > this.table.length / WORDS)
+				this.resize();
+			return true;
+		}
+	}
+
+	/**
+	 * Returns whether a game equivalent to given one was added.
+	 */
+	public boolean contains(Board game) {
+		long[] key = key(game);
+		synchronized (this) {
+			return this.table[this.find(key) + WORDS - 1] != 0;
+		}
+	}
+
+	/**
+	 * Returns the number of games added.
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the slot holding given key, or the empty slot where it belongs.
+	 */
+	private int find(long[] key) {
+		int slots = this.table.length / WORDS;
+		int slot = hash(key) & (slots - 1);
+		while (true) {
+			int offset = slot * WORDS;
+			if (this.table[offset + WORDS - 1] == 0)
+				return offset;
+			if (matches(this.table, offset, key))
+				return offset;
+			slot = (slot + 1) & (slots - 1);
+		}
+	}
+
+	private void resize() {
+		long[] old = this.table;
+		this.table = new long[old.length * 2];
+		long[] key = new long[WORDS];
+		for (int offset = 0; offset < old.length; offset += WORDS) {
+			if (old[offset + WORDS - 1] == 0)
+				continue;
+			System.arraycopy(old, offset, key, 0, WORDS);
+			System.arraycopy(key, 0, this.table, this.find(key), WORDS);
+		}
+	}
+
+	/**
+	 * Packs the canonical form of a game, 16 cells per long.
+	 */
+	private static long[] key(Board game) {
+		Board form = new Board();
+		Canonicalizer.get().canonicalize(game, form);
+		long[] key = new long[WORDS];
+		for (int position = 0; position < Board.CELLS; position++) {
+			key[position / 16] |= (long) form.get(position) << 4 * (position % 16);
+		}
+		key[WORDS - 1] |= OCCUPIED;
+		return key;
+	}
+
+	private static boolean matches(long[] table, int offset, long[] key) {
+		for (int i = 0; i < WORDS; i++) {
+			if (table[offset + i] != key[i])
+				return false;
+		}
+		return true;
+	}
+
+	private static int hash(long[] key) {
+		long hash = Arrays.hashCode(key) * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ hash >>> 32);
+	}
+}
@@ -0,0 +1,237 @@
+package ivanov.sudoku;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * A read-only library of generated games stored in one file, which is mapped
+ * into memory so that a game is read straight from the page cache without
+ * parsing the file. A game is fetched by difficulty and by its position in
+ * rating order in constant time, rating bounds are found by binary search.<br />
+ * <br />
+ * The file starts with a header of {@link #HEADER} bytes: the magic "SDKL",
+ * the version, the record length, the number of records and the offset of the
+ * index. Each game is a record of {@link #RECORD} bytes: the packed game, the
+ * packed solution, the difficulty byte and the rating as an unsigned short.
+ * The index follows the records: the number of difficulties, then for each
+ * difficulty its value, its number of games and the record numbers of these
+ * games sorted by rating. Multi-byte values are big-endian.<br />
+ * Libraries are written by {@link PuzzleLibraryWriter}. The reading methods do
+ * not change any buffer position, so a library may be shared by threads.
+ *
+ */
+public class PuzzleLibrary {
+	static final int MAGIC = 0x53444B4C; // "SDKL"
+	static final int VERSION = 1;
+	/** Length of the header in bytes. */
+	public static final int HEADER = 32;
+	/** Length of a record in bytes. */
+	public static final int RECORD = 88;
+	static final int SOLUTION_OFFSET = Board.PACKED_LENGTH;
+	static final int DIFFICULTY_OFFSET = 2 * Board.PACKED_LENGTH;
+	static final int RATING_OFFSET = DIFFICULTY_OFFSET + 2;
+
+	private final ByteBuffer buffer;
+	private final int size;
+	private final int[] difficulties;
+	private final int[] counts;
+	private final int[] positions; // Index position of each difficulty.
+
+	private PuzzleLibrary(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER + 4 || buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a puzzle library");
+		if (buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD)
+			throw new IOException("Unsupported puzzle library version "
+					+ buffer.getInt(4));
+		this.size = buffer.getInt(12);
+		long index = buffer.getLong(16);
+		if (this.size < 0 || index != HEADER + (long) this.size * RECORD
+				|| index + 4 > buffer.capacity())
+			throw new IOException("Corrupt puzzle library header");
+		int groups = buffer.getInt((int) index);
+		if (groups < 0 || groups > 256)
+			throw new IOException("Corrupt puzzle library index");
+		this.difficulties = new int[groups];
+		this.counts = new int[groups];
+		this.positions = new int[groups];
+		long position = index + 4;
+		for (int i = 0; i < groups; i++) {
+			if (position + 8 > buffer.capacity())
+				throw new IOException("Corrupt puzzle library index");
+			this.difficulties[i] = buffer.getInt((int) position);
+			this.counts[i] = buffer.getInt((int) position + 4);
+			this.positions[i] = (int) position + 8;
+			position += 8 + 4L * this.counts[i];
+		}
+		if (position != buffer.capacity())
+			throw new IOException("Corrupt puzzle library index");
+	}
+
+	/**
+	 * Maps a library file into memory.
+	 *
+	 * @param file
+	 *            - the library file
+	 * @return the library
+	 * @throws IOException
+	 *             if the file cannot be read or is not a library
+	 */
+	public static PuzzleLibrary open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Puzzle library too large: " + file);
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new PuzzleLibrary(buffer);
+		}
+	}
+
+	/**
+	 * Returns the number of games of the library.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of games of given difficulty.
+	 */
+	public int count(int difficulty) {
+		int group = this.group(difficulty);
+		return group < 0 ? 0 : this.counts[group];
+	}
+
+	/**
+	 * Returns the number of games of given difficulty whose rating is within
+	 * given bounds, inclusive.
+	 */
+	public int count(int difficulty, int minRating, int maxRating) {
+		int group = this.group(difficulty);
+		if (group < 0)
+			return 0;
+		return Math.max(0, this.lowerBound(group, maxRating + 1)
+				- this.lowerBound(group, minRating));
+	}
+
+	/**
+	 * Returns the n-th game of given difficulty in rating order.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if there are not more than n such games
+	 */
+	public Game get(int difficulty, int n) {
+		int group = this.group(difficulty);
+		if (n < 0 || n >= this.count(difficulty))
+			throw new IndexOutOfBoundsException("No game " + n
+					+ " of difficulty " + difficulty);
+		return this.read(this.record(group, n));
+	}
+
+	/**
+	 * Returns the n-th game of given difficulty in rating order among those
+	 * whose rating is within given bounds, inclusive.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if there are not more than n such games
+	 */
+	public Game get(int difficulty, int minRating, int maxRating, int n) {
+		int group = this.group(difficulty);
+		int first = group < 0 ? 0 : this.lowerBound(group, minRating);
+		if (n < 0 || n >= this.count(difficulty, minRating, maxRating))
+			throw new IndexOutOfBoundsException("No game " + n
+					+ " of difficulty " + difficulty);
+		return this.read(this.record(group, first + n));
+	}
+
+	/**
+	 * Returns a random game of given difficulty.
+	 *
+	 * @return the game or null if the library has no game of that difficulty
+	 */
+	public Game random(int difficulty, Random random) {
+		int count = this.count(difficulty);
+		return count == 0 ? null : this.get(difficulty, random.nextInt(count));
+	}
+
+	/**
+	 * Reads a record into given boards, the cells of the game are marked as
+	 * given.
+	 *
+	 * @param record
+	 *            - the record number, in the order the games were appended
+	 * @throws IllegalStateException
+	 *             if the record is corrupt
+	 */
+	public void read(int record, Board game, Board solution) {
+		int offset = offset(record);
+		if (!game.unpack(this.buffer, offset)
+				|| !solution.unpack(this.buffer, offset + SOLUTION_OFFSET))
+			throw new IllegalStateException("Corrupt puzzle library record "
+					+ record);
+		game.setGivens();
+	}
+
+	/**
+	 * Returns the difficulty of a record.
+	 */
+	public int getDifficulty(int record) {
+		return this.buffer.get(offset(record) + DIFFICULTY_OFFSET);
+	}
+
+	/**
+	 * Returns the rating of a record.
+	 */
+	public int getRating(int record) {
+		return this.buffer.getShort(offset(record) + RATING_OFFSET) & 0xFFFF;
+	}
+
+	private Game read(int record) {
+		Board game = new Board();
+		Board solution = new Board();
+		this.read(record, game, solution);
+		return new Game(game, solution, this.getRating(record));
+	}
+
+	private int offset(int record) {
+		if (record < 0 || record >= this.size)
+			throw new IndexOutOfBoundsException("No record " + record);
+		return HEADER + record * RECORD;
+	}
+
+	private int record(int group, int n) {
+		return this.buffer.getInt(this.positions[group] + 4 * n);
+	}
+
+	private int group(int difficulty) {
+		for (int i = 0; i < this.difficulties.length; i++) {
+			if (this.difficulties[i] == difficulty)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the position of the first game of a difficulty whose rating is
+	 * not below given rating.
+	 */
+	private int lowerBound(int group, int rating) {
+		int low = 0;
+		int high = this.counts[group];
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.getRating(this.record(group, middle)) < rating) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
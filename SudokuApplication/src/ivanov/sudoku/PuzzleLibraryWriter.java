@@ -0,0 +1,242 @@
+package ivanov.sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Appends games to a {@link PuzzleLibrary} file, creating it if needed. The
+ * records are written through a buffer of many records and the index is
+ * rebuilt when the writer is closed, so games should be appended in bulk
+ * rather than by opening a writer for each one. A library which is being
+ * written must not be opened for reading.<br />
+ * A game equivalent to one already in the library, or appended before, is
+ * not written, see {@link PuzzleIndex}. The index is built from the existing
+ * records when the writer is opened.<br />
+ * The append methods are thread safe, so a writer may be fed by the threads
+ * of the {@link BulkGenerator}.
+ *
+ */
+public class PuzzleLibraryWriter implements Closeable {
+	private static final int BATCH = 512; // Records per write.
+
+	private final FileChannel channel;
+	private final ByteBuffer records = ByteBuffer
+			.allocate(BATCH * PuzzleLibrary.RECORD);
+	private int size;
+	private long[] keys; // Difficulty, rating and record number.
+	private final PuzzleIndex index = new PuzzleIndex();
+
+	/**
+	 * Opens a library for appending.
+	 *
+	 * @param file
+	 *            - the library file, created if it does not exist
+	 * @throws IOException
+	 *             if the file cannot be opened or is not a library
+	 */
+	public PuzzleLibraryWriter(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			this.keys = new long[1024];
+			if (this.channel.size() > 0)
+				this.readRecords();
+			long end = PuzzleLibrary.HEADER + (long) this.size
+					* PuzzleLibrary.RECORD;
+			this.channel.truncate(end); // The index is written on close.
+			this.channel.position(end);
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends a generated game.
+	 *
+	 * @param game
+	 *            - the game, its solution is stored with it
+	 * @param difficulty
+	 *            - the difficulty the game was generated with
+	 * @param rating
+	 *            - the rating of the game, from 0 to 65535
+	 * @return false if the game was not appended because the library has an
+	 *         equivalent game
+	 * @throws IOException
+	 *             if the records cannot be written
+	 */
+	public boolean append(Game game, int difficulty, int rating)
+			throws IOException {
+		return this.append(game.getGame(), game.getSolution(), difficulty,
+				rating);
+	}
+
+	/**
+	 * Appends a game given by its board and solution.
+	 *
+	 * @see #append(Game, int, int)
+	 */
+	public boolean append(Board game, Board solution, int difficulty,
+			int rating) throws IOException {
+		if (difficulty < Byte.MIN_VALUE || difficulty > Byte.MAX_VALUE
+				|| rating < 0 || rating > 0xFFFF)
+			throw new IllegalArgumentException("Invalid difficulty or rating");
+		if (!this.index.add(game))
+			return false;
+		this.write(game, solution, difficulty, rating);
+		return true;
+	}
+
+	private synchronized void write(Board game, Board solution,
+			int difficulty, int rating) throws IOException {
+		int offset = this.records.position();
+		game.pack(this.records, offset);
+		solution.pack(this.records, offset + PuzzleLibrary.SOLUTION_OFFSET);
+		this.records.putShort(offset + PuzzleLibrary.DIFFICULTY_OFFSET,
+				(short) (difficulty << 8)); // Clears the reserved byte.
+		this.records.putInt(offset + PuzzleLibrary.RATING_OFFSET,
+				rating << 16);
+		this.records.position(offset + PuzzleLibrary.RECORD);
+		this.addKey(difficulty, rating);
+		if (!this.records.hasRemaining())
+			this.flush();
+	}
+
+	/**
+	 * Returns the number of games of the library, including those appended.
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Writes the remaining records, the index and the header and closes the
+	 * file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!this.channel.isOpen())
+			return;
+		try {
+			this.flush();
+			this.writeIndex();
+			this.channel.force(false);
+		} finally {
+			this.channel.close();
+		}
+	}
+
+	/**
+	 * Validates the header of an existing library and collects the keys and
+	 * the canonical forms of its records.
+	 */
+	private void readRecords() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(PuzzleLibrary.HEADER);
+		this.readFully(header, 0);
+		if (header.getInt(0) != PuzzleLibrary.MAGIC
+				|| header.getInt(4) != PuzzleLibrary.VERSION
+				|| header.getInt(8) != PuzzleLibrary.RECORD)
+			throw new IOException("Not a puzzle library");
+		int count = header.getInt(12);
+		Board game = new Board();
+		long end = PuzzleLibrary.HEADER + (long) count * PuzzleLibrary.RECORD;
+		if (count < 0 || end > this.channel.size())
+			throw new IOException("Corrupt puzzle library header");
+		for (int record = 0; record < count; record += BATCH) {
+			int n = Math.min(BATCH, count - record);
+			this.records.clear().limit(n * PuzzleLibrary.RECORD);
+			this.readFully(this.records, PuzzleLibrary.HEADER + (long) record
+					* PuzzleLibrary.RECORD);
+			for (int i = 0; i < n; i++) {
+				int offset = i * PuzzleLibrary.RECORD;
+				int difficulty = this.records.get(offset
+						+ PuzzleLibrary.DIFFICULTY_OFFSET);
+				int rating = this.records.getShort(offset
+						+ PuzzleLibrary.RATING_OFFSET) & 0xFFFF;
+				this.addKey(difficulty, rating);
+				if (!game.unpack(this.records, offset))
+					throw new IOException("Corrupt puzzle library record "
+							+ (record + i));
+				this.index.add(game);
+			}
+		}
+		this.records.clear();
+	}
+
+	private void addKey(int difficulty, int rating) {
+		if (this.size == this.keys.length)
+			this.keys = Arrays.copyOf(this.keys, this.size * 2);
+		this.keys[this.size] = (long) (difficulty - Byte.MIN_VALUE) << 48
+				| (long) rating << 32 | this.size;
+		this.size++;
+	}
+
+	private void flush() throws IOException {
+		this.records.flip();
+		while (this.records.hasRemaining()) {
+			this.channel.write(this.records);
+		}
+		this.records.clear();
+	}
+
+	/**
+	 * Sorts the keys by difficulty, rating and record number and writes them
+	 * as the index after the records, then the header.
+	 */
+	private void writeIndex() throws IOException {
+		long[] sorted = Arrays.copyOf(this.keys, this.size);
+		Arrays.sort(sorted);
+		int groups = 0;
+		for (int i = 0; i < this.size; i++) {
+			if (i == 0 || sorted[i] >>> 48 != sorted[i - 1] >>> 48)
+				groups++;
+		}
+		ByteBuffer index = ByteBuffer.allocate(4 + 8 * groups + 4 * this.size);
+		index.putInt(groups);
+		for (int i = 0; i < this.size;) {
+			int group = (int) (sorted[i] >>> 48);
+			int end = i;
+			while (end < this.size && sorted[end] >>> 48 == group) {
+				end++;
+			}
+			index.putInt(group + Byte.MIN_VALUE);
+			index.putInt(end - i);
+			for (; i < end; i++) {
+				index.putInt((int) sorted[i]);
+			}
+		}
+		long indexOffset = PuzzleLibrary.HEADER + (long) this.size
+				* PuzzleLibrary.RECORD;
+		index.flip();
+		this.writeFully(index, indexOffset);
+		ByteBuffer header = ByteBuffer.allocate(PuzzleLibrary.HEADER);
+		header.putInt(PuzzleLibrary.MAGIC);
+		header.putInt(PuzzleLibrary.VERSION);
+		header.putInt(PuzzleLibrary.RECORD);
+		header.putInt(this.size);
+		header.putLong(indexOffset);
+		header.clear();
+		this.writeFully(header, 0);
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = this.channel.read(buffer, position);
+			if (read < 0)
+				throw new IOException("Unexpected end of puzzle library");
+			position += read;
+		}
+	}
+
+	private void writeFully(ByteBuffer buffer, long position)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			position += this.channel.write(buffer, position);
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package ivanov.sudoku;
+
+/**
+ * Receives the games produced by the {@link BulkGenerator}. The generator
+ * calls the sink from all of its worker threads at the same time, so
+ * implementations have to be thread safe. A sink may reject a game, for
+ * example a duplicate found by a {@link PuzzleIndex}, and the generator then
+ * generates another one in its place.
+ *
+ */
+public interface PuzzleSink {
+
+	/**
+	 * Accepts one generated game.
+	 *
+	 * @param game
+	 *            - the generated game
+	 * @return false if the game was rejected and has to be replaced
+	 */
+	boolean accept(Game game);
+}
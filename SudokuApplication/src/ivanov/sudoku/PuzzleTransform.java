@@ -0,0 +1,109 @@
+package ivanov.sudoku;
+
+import java.util.Random;
+
+/**
+ * A symmetry of the Sudoku grid: a relabelling of the numbers, an order of
+ * the rows which keeps the rows of a band together and an order of the
+ * columns which keeps the columns of a stack together, optionally preceded by
+ * a transposition. Rotations and reflections are combinations of these. A
+ * transformed game has exactly the solutions of the original game
+ * transformed the same way, so it is as unique and as hard as the original,
+ * but it looks like a new game (see {@link Canonicalizer} for telling them
+ * apart).
+ *
+ */
+public class PuzzleTransform {
+	private final int[] rows = new int[9]; // Source row of each row.
+	private final int[] columns = new int[9]; // Source column of each column.
+	private final int[] numbers = new int[10]; // New label of each number.
+	private final boolean transpose;
+
+	private PuzzleTransform(boolean transpose) {
+		this.transpose = transpose;
+	}
+
+	/**
+	 * Returns a transform chosen uniformly among all symmetries.
+	 *
+	 * @param random
+	 *            - the source of the choice
+	 */
+	public static PuzzleTransform random(Random random) {
+		PuzzleTransform transform = new PuzzleTransform(random.nextBoolean());
+		shuffleLines(transform.rows, random);
+		shuffleLines(transform.columns, random);
+		for (int number = 1; number <= 9; number++) {
+			transform.numbers[number] = number;
+		}
+		for (int number = 9; number > 1; number--) {
+			int other = 1 + random.nextInt(number);
+			int label = transform.numbers[number];
+			transform.numbers[number] = transform.numbers[other];
+			transform.numbers[other] = label;
+		}
+		return transform;
+	}
+
+	/**
+	 * Writes the transformed board into another board, the marks of the
+	 * given cells move with the cells.
+	 *
+	 * @param source
+	 *            - the board to transform, it is not modified
+	 * @param target
+	 *            - receives the transformed board, it must not be the source
+	 * @throws IllegalArgumentException
+	 *             if a board is not standard
+	 */
+	public void apply(Board source, Board target) {
+		source.checkStandard();
+		target.checkStandard();
+		for (int y = 0; y < 9; y++) {
+			for (int x = 0; x < 9; x++) {
+				int sourceX = this.columns[x];
+				int sourceY = this.rows[y];
+				int index = this.transpose ? sourceX * 9 + sourceY : sourceY
+						* 9 + sourceX;
+				target.set(x, y, this.numbers[source.get(index)]);
+				target.setGiven(y * 9 + x, source.isGiven(index));
+			}
+		}
+	}
+
+	/**
+	 * Returns the transformed game with the transformed solution and the
+	 * rating of the original game.
+	 */
+	public Game apply(Game game) {
+		Board board = new Board();
+		Board solution = new Board();
+		this.apply(game.getGame(), board);
+		this.apply(game.getSolution(), solution);
+		return new Game(board, solution, game.getRating());
+	}
+
+	/**
+	 * Fills an order of 9 lines which keeps the lines of a band together.
+	 */
+	private static void shuffleLines(int[] lines, Random random) {
+		int[] bands = permutation(random);
+		for (int band = 0; band < 3; band++) {
+			int[] order = permutation(random);
+			for (int i = 0; i < 3; i++) {
+				lines[band * 3 + i] = bands[band] * 3 + order[i];
+			}
+		}
+	}
+
+	private static int[] permutation(Random random) {
+		int[] order = { 0, 1, 2 };
+		for (int i = 2; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+		return order;
+	}
+}
@@ -0,0 +1,114 @@
+package ivanov.sudoku;
+
+import java.util.Random;
+
+/**
+ * Makes new games from a few rated games of every difficulty built into this
+ * class, by a random {@link PuzzleTransform} instead of generating them. This
+ * takes microseconds rather than milliseconds and keeps the rating of the
+ * built-in game, so a game is available even before any game was generated.
+ * Games of a {@link PuzzleLibrary} can be varied the same way with
+ * {@link PuzzleTransform#apply(Game)}.
+ *
+ */
+public final class PuzzleVariants {
+	// In the order of GamePool.DIFFICULTIES. Generated games, no two of
+	// which have the same canonical form (see Canonicalizer), so no variant
+	// of one game is a variant of another.
+	private static final String[][] SEEDS = {
+			{ // Easy
+			"......5...28..7.4....24938..4.9.....21.3.4.68.....1.3..74198....3.4..79...9......",
+			"...596.3.4.....5..695......75..4....38.2.1.45....8..97......754..4.....2.7.453...",
+			"..2.3.175.1897.6.....1.......4...29..6.....5..25...8.......2.....9.4632.231.9.5..",
+			"6..3..71.8.37..6..57...8...9.7.3......2...1......2.4.9...1...84..8..35.1.15..6..3",
+			".....5...294...5....6.279.1..3..1.7..1..3..9..4.7..1..4.167.8....9...415...1.....",
+			".6...1.7...57..4.2.7.....93..49...5.3.......4.5...31..58.....4.6.2..85...4.3...6.",
+			"...8...63......59...4.6.18.9..2.46......1......75.8..2.63.2.8...29......48...6...",
+			"8.9.4617.6.13..9.4........8.....38....85716....28.....9........1.3..54.6.8461.7.3" },
+			{ // Medium
+			"..4......8...5361...641...8..12....7...745...9....12..1...643...6318...5......8..",
+			"7.8....1.1....6..336.5...94...7.......92.41.......9...93...8.478..6....9.7....8.1",
+			"....1.9.5..867...34....3.8......23..7.1...5.4..27......1.2....62...698..8.6.4....",
+			"........16...413..7..3..48....8..23....973....68..2....12..7..4..419...25........",
+			"....1....5169..3...78.....5.8....64.1..6.9..8.63....5.8.....47...4..7829....2....",
+			"..4.2.....5.7.....7..194..69.1.5..8.5...8...1.8..4.7.92..678..5.....2.9.....1.2..",
+			".1..7.5.......68.22.64..9.7.8...34.............28...9.1.7..93.55.82.......9.3..7.",
+			"...5..2...5.1.4..7.7..2.64.5.....3..91.....76..8.....2.35.4..9.7..3.9.6...9..5..." },
+			{ // Hard
+			".6...5....24.......7.9.3.82..63....5.92...34.4....68..93.7.2.6.......25....6...1.",
+			".......8.8...5.1.7.37..6..5.96.25..3.5.1.9.4.7..63.59.9..7..36.6.1.9...4.4.......",
+			".5...2..3...8..4..1.95...8...291.......4.8.......361...8...52.9..1..9...6..7...5.",
+			"....3.567.....6..3..5......74..518.9..8...1..1.942..35......9..3..2.....916.7....",
+			"...1...8....34...2.12..7..45.98..4.....9.3.....6..59.19..7..25.2...94....3...1...",
+			"4....153..39.4...8..67...4.1........6.3...4.1........5.9...67..7...8.25..215....9",
+			"...57..4......3..1....9.65...2.39..4.64...81.7..14.2...89.1....5..3......3..86...",
+			"9.4.......5.9.6...73.5.1...6.8..72...1.....8...34..1.9...2.5.13...6.3.2.......9.5" },
+			{ // Expert
+			"..85..96.71...........8..211....95...4..1..9...92....462..4...........79.71..24..",
+			"....6.8.3..314.92.2...........4..5..8.4.5.3.2..1..7...........4.48.397..5.2.8....",
+			"..6.1.2..5..7..19....5...6...5.46.7....8.5....7.93.8...6...1....41..3..9..3.9.4..",
+			"..9..6..41..2...8.85....6..3....21......4......19....6..5....62.6...3..82..5..7..",
+			".5...73....1.5..9.3.8...7.216...5.....56.42.....7...654.6...9.3.2..3.4....38...2.",
+			"8...7.425.6..5.17....1..........1.3...12459...4.6..........9....98.6..5.726.1...8",
+			".3.2....678...549.2.9.6.....67.........5.6.........36.....1.2.8.234...711....8.4.",
+			"...8...3..31..65..54.3....9...5.....9.7...1.5.....7...6....5.14..91..32..2...3..." } };
+
+	private static final Game[][] GAMES = createGames(); // Solved and rated.
+
+	private PuzzleVariants() {
+	}
+
+	/**
+	 * Returns a variant of a random built-in game of given difficulty.
+	 *
+	 * @param difficulty
+	 *            - one of the difficulties of {@link GamePool#DIFFICULTIES}
+	 * @param random
+	 *            - the source of the built-in game and of the transform
+	 * @return the variant, or null if the difficulty is unknown
+	 */
+	public static Game variant(int difficulty, Random random) {
+		Game game = seed(difficulty, random);
+		return game == null ? null : PuzzleTransform.random(random).apply(game);
+	}
+
+	/**
+	 * Returns a random built-in game of given difficulty, or null if the
+	 * difficulty is unknown.
+	 */
+	private static Game seed(int difficulty, Random random) {
+		Game[] games = getGames(difficulty);
+		return games == null ? null : games[random.nextInt(games.length)];
+	}
+
+	/**
+	 * Returns the built-in games of given difficulty, or null if the
+	 * difficulty is unknown. The array must not be modified.
+	 */
+	static Game[] getGames(int difficulty) {
+		for (int i = 0; i < GamePool.DIFFICULTIES.length; i++) {
+			if (GamePool.DIFFICULTIES[i] == difficulty)
+				return GAMES[i];
+		}
+		return null;
+	}
+
+	/**
+	 * Parses, solves and rates the built-in games once, so that a variant
+	 * only costs the transform.
+	 */
+	private static Game[][] createGames() {
+		Game[][] games = new Game[SEEDS.length][];
+		for (int i = 0; i < SEEDS.length; i++) {
+			games[i] = new Game[SEEDS[i].length];
+			for (int j = 0; j < SEEDS[i].length; j++) {
+				Board game = PuzzleFormat.parse(SEEDS[i][j]);
+				Board solution = new Board(game);
+				SolverFactory.get().solve(solution, null);
+				games[i][j] = new Game(game, solution, DifficultyRater.get()
+						.rate(game));
+			}
+		}
+		return games;
+	}
+}
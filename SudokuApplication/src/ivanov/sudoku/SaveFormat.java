@@ -0,0 +1,353 @@
+package ivanov.sudoku;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes saved games in a compact, versioned binary format. A file
+ * of version 1 is 106 bytes long:
+ * <ul>
+ * <li>the magic bytes "SDKU" and the version byte,</li>
+ * <li>the numbers of the board packed two cells to a byte (41 bytes),</li>
+ * <li>the mask of the cells given by the game (11 bytes),</li>
+ * <li>the solution packed like the board (41 bytes),</li>
+ * <li>the elapsed time in seconds (4 bytes),</li>
+ * <li>the CRC32 checksum of all the previous bytes (4 bytes).</li>
+ * </ul>
+ * Boards of other sizes are written in version 2, which follows the version
+ * byte with the box size and keeps a byte per cell instead of two cells per
+ * byte, so a 16x16 game takes 558 bytes and a 25x25 game 1343 bytes.<br />
+ * Multi-byte values are big-endian. Files written with Java serialization by
+ * earlier versions of the application are recognised and migrated when they
+ * are read.
+ *
+ */
+public final class SaveFormat {
+	/** The extension of saved game files. */
+	public static final String EXTENSION = ".sudoku";
+	/** The version written by this class for 9x9 boards. */
+	public static final int VERSION = 1;
+	/** The version written by this class for boards of other sizes. */
+	public static final int LARGE_VERSION = 2;
+	/** The length of a version 1 file in bytes. */
+	public static final int LENGTH = 106;
+
+	private static final int MAGIC = 0x53444B55; // "SDKU"
+	private static final int SERIALIZED_MAGIC = 0xACED; // Java serialization.
+
+	private SaveFormat() {
+	}
+
+	/**
+	 * Writes a saved game to given file, replacing its content.
+	 *
+	 * @param file
+	 *            - the file to write
+	 * @param savedGame
+	 *            - the game to save, its Game must not be null
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void write(Path file, SavedGame savedGame) throws IOException {
+		Board board = savedGame.getGameCopy();
+		boolean standard = board.isStandard();
+		ByteBuffer buffer = ByteBuffer.allocate(standard ? LENGTH
+				: length(board.getBoxSize()));
+		buffer.putInt(MAGIC);
+		if (standard) {
+			buffer.put((byte) VERSION);
+			pack(board, buffer);
+		} else {
+			buffer.put((byte) LARGE_VERSION);
+			buffer.put((byte) board.getBoxSize());
+			putCells(board, buffer);
+		}
+		byte[] givens = new byte[givensLength(board.getCellCount())];
+		for (int i = 0; i < board.getCellCount(); i++) {
+			if (board.isGiven(i))
+				givens[i >> 3] |= 1 << (i & 7);
+		}
+		buffer.put(givens);
+		if (standard) {
+			pack(savedGame.getGame().getSolution(), buffer);
+		} else {
+			putCells(savedGame.getGame().getSolution(), buffer);
+		}
+		buffer.putInt(savedGame.getHours() * 3600 + savedGame.getMinutes() * 60
+				+ savedGame.getSeconds());
+		buffer.putInt(checksum(buffer.array(), buffer.position()));
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Reads a saved game from given file, which may be in this format or a
+	 * game serialized by an earlier version of the application.
+	 *
+	 * @param file
+	 *            - the file to read
+	 * @return the saved game
+	 * @throws IOException
+	 *             if the file cannot be read, is corrupt or has an unknown
+	 *             format
+	 */
+	public static SavedGame read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(2);
+			readFully(channel, header);
+			if ((header.getShort(0) & 0xFFFF) == SERIALIZED_MAGIC) {
+				channel.position(0);
+				return readLegacy(Channels.newInputStream(channel));
+			}
+			long size = channel.size();
+			if (size != LENGTH
+					&& (size < length(2) || size > length(Board.MAX_BOX_SIZE)))
+				throw new IOException("Not a saved game: " + file);
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			buffer.put(header.array());
+			readFully(channel, buffer);
+			return read(buffer);
+		}
+	}
+
+	/**
+	 * Rewrites a game serialized by an earlier version of the application in
+	 * this format.
+	 *
+	 * @param source
+	 *            - the file to read
+	 * @param target
+	 *            - the file to write, may be the same as the source
+	 * @throws IOException
+	 *             if a file cannot be read or written
+	 */
+	public static void migrate(Path source, Path target) throws IOException {
+		write(target, read(source));
+	}
+
+	private static SavedGame read(ByteBuffer buffer) throws IOException {
+		int length = buffer.capacity();
+		if (buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a saved game");
+		if (checksum(buffer.array(), length - 4) != buffer.getInt(length - 4))
+			throw new IOException("Corrupt saved game: checksum mismatch");
+		buffer.position(4);
+		int version = buffer.get();
+		int boxSize = Board.BOX_SIZE;
+		if (version == LARGE_VERSION)
+			boxSize = buffer.get();
+		else if (version != VERSION)
+			throw new IOException("Unsupported saved game version " + version);
+		if (boxSize < 2 || boxSize > Board.MAX_BOX_SIZE
+				|| length != (version == VERSION ? LENGTH : length(boxSize)))
+			throw new IOException("Corrupt saved game: invalid length");
+		Board board = version == VERSION ? unpack(buffer, false) : getCells(
+				buffer, boxSize, false);
+		byte[] givens = new byte[givensLength(board.getCellCount())];
+		buffer.get(givens);
+		Board puzzle = new Board(boxSize);
+		for (int i = 0; i < board.getCellCount(); i++) {
+			if ((givens[i >> 3] & (1 << (i & 7))) != 0) {
+				board.setGiven(i, true);
+				puzzle.set(i, board.get(i));
+			}
+		}
+		puzzle.setGivens();
+		Board solution = version == VERSION ? unpack(buffer, true) : getCells(
+				buffer, boxSize, true);
+		int elapsed = buffer.getInt();
+		if (elapsed < 0)
+			throw new IOException("Corrupt saved game: negative time");
+		return new SavedGame(board, new Game(puzzle, solution),
+				elapsed / 3600, elapsed / 60 % 60, elapsed % 60);
+	}
+
+	private static void pack(Board board, ByteBuffer buffer) {
+		board.pack(buffer, buffer.position());
+		buffer.position(buffer.position() + Board.PACKED_LENGTH);
+	}
+
+	/**
+	 * Reads a packed board, all cells of a solution must be filled.
+	 */
+	private static Board unpack(ByteBuffer buffer, boolean solution)
+			throws IOException {
+		Board board = new Board();
+		if (!board.unpack(buffer, buffer.position())
+				|| (solution && board.countFilled() < Board.CELLS))
+			throw new IOException("Corrupt saved game: invalid number");
+		buffer.position(buffer.position() + Board.PACKED_LENGTH);
+		return board;
+	}
+
+	/**
+	 * Writes a board of any size, one cell to a byte.
+	 */
+	private static void putCells(Board board, ByteBuffer buffer) {
+		for (int i = 0; i < board.getCellCount(); i++) {
+			buffer.put((byte) board.get(i));
+		}
+	}
+
+	/**
+	 * Reads a board written by {@link #putCells(Board, ByteBuffer)}, all cells
+	 * of a solution must be filled.
+	 */
+	private static Board getCells(ByteBuffer buffer, int boxSize,
+			boolean solution) throws IOException {
+		Board board = new Board(boxSize);
+		for (int i = 0; i < board.getCellCount(); i++) {
+			int number = buffer.get();
+			if (number < 0 || number > board.getSize()
+					|| (solution && number == 0))
+				throw new IOException("Corrupt saved game: invalid number");
+			board.set(i, number);
+		}
+		return board;
+	}
+
+	/**
+	 * Returns the length of a version 2 file for given box size.
+	 */
+	private static int length(int boxSize) {
+		int cells = boxSize * boxSize * boxSize * boxSize;
+		return 6 + 2 * cells + givensLength(cells) + 8;
+	}
+
+	private static int givensLength(int cells) {
+		return (cells + 7) / 8;
+	}
+
+	private static int checksum(byte[] bytes, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, length);
+		return (int) crc.getValue();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0)
+				throw new IOException("Unexpected end of saved game");
+		}
+	}
+
+	/**
+	 * Reads a SavedGame written with Java serialization by the application
+	 * before this format, when the board was kept in int[][] arrays.
+	 */
+	private static SavedGame readLegacy(InputStream in) throws IOException {
+		LegacySavedGame legacy;
+		try (ObjectInputStream ois = new LegacyInputStream(in)) {
+			legacy = (LegacySavedGame) ois.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Unsupported serialized saved game", e);
+		}
+		if (legacy.game == null || legacy.userInputCopy == null
+				|| legacy.userInputCopy.length != 9)
+			throw new IOException("Incomplete serialized saved game");
+		Board board = toBoard(legacy.gameCopy);
+		for (int y = 0; y < 9; y++) {
+			if (legacy.userInputCopy[y] == null
+					|| legacy.userInputCopy[y].length != 9)
+				throw new IOException("Corrupt serialized saved game");
+			for (int x = 0; x < 9; x++) {
+				if (board.get(x, y) > 0 && !legacy.userInputCopy[y][x])
+					board.setGiven(y * 9 + x, true);
+			}
+		}
+		Board puzzle = toBoard(legacy.game.game);
+		puzzle.setGivens();
+		return new SavedGame(board, new Game(puzzle,
+				toBoard(legacy.game.solution)), legacy.hours, legacy.minutes,
+				legacy.seconds);
+	}
+
+	private static Board toBoard(int[][] numbers) throws IOException {
+		if (numbers == null || numbers.length != 9)
+			throw new IOException("Corrupt serialized saved game");
+		Board board = new Board();
+		for (int y = 0; y < 9; y++) {
+			if (numbers[y] == null || numbers[y].length != 9)
+				throw new IOException("Corrupt serialized saved game");
+			for (int x = 0; x < 9; x++) {
+				if (numbers[y][x] < 0 || numbers[y][x] > 9)
+					throw new IOException("Corrupt serialized saved game");
+				board.set(x, y, numbers[y][x]);
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Reads the serialized ivanov.sudoku.SavedGame and ivanov.sudoku.Game into
+	 * copies of their former fields, as the current classes are no longer
+	 * serializable.
+	 *
+	 */
+	private static class LegacyInputStream extends ObjectInputStream {
+		private LegacyInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException,
+				ClassNotFoundException {
+			ObjectStreamClass descriptor = super.readClassDescriptor();
+			if (descriptor.getName().equals("ivanov.sudoku.SavedGame"))
+				return ObjectStreamClass.lookup(LegacySavedGame.class);
+			if (descriptor.getName().equals("ivanov.sudoku.Game"))
+				return ObjectStreamClass.lookup(LegacyGame.class);
+			return descriptor;
+		}
+
+		/**
+		 * Resolves only the classes a former saved game consists of, so a
+		 * crafted file cannot instantiate anything else.
+		 */
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass descriptor)
+				throws IOException, ClassNotFoundException {
+			String name = descriptor.getName();
+			if (name.equals(LegacySavedGame.class.getName())
+					|| name.equals(LegacyGame.class.getName())
+					|| name.equals("[[I") || name.equals("[I")
+					|| name.equals("[[Z") || name.equals("[Z"))
+				return super.resolveClass(descriptor);
+			throw new InvalidClassException(name, "Not part of a saved game");
+		}
+	}
+
+	private static class LegacySavedGame implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private int[][] gameCopy;
+		private LegacyGame game;
+		private int hours;
+		private int minutes;
+		private int seconds;
+		private boolean[][] userInputCopy;
+	}
+
+	private static class LegacyGame implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private int[][] solution;
+		private int[][] game;
+	}
+}
@@ -1,26 +1,26 @@
 package ivanov.sudoku;
 
-import java.io.Serializable;
-
 /**
  * This class gets all the data from the current game including
- * an array with the numbers;
- * the matrix which details which number is initially input and which is input from the user 
- * the current state of the clock
+ * a board with the numbers, which also details which number is initially input and which is input from the user;
+ * the current state of the clock.
+ * It is written to and read from a file by {@link SaveFormat}
  * @author Ivo Ivanov
  *
  */
-public class SavedGame implements Serializable {	
-	private static final long serialVersionUID = 1L;
-	private int[][] gameCopy;
+public class SavedGame {
+	private Board gameCopy;
 	private Game game;
 	private int hours;
 	private int minutes;
 	private int seconds;
-	private boolean[][] userInputCopy;
 	
-	public SavedGame (){
-		
+	public SavedGame(Board gameCopy, Game game, int hours, int minutes, int seconds){
+		this.gameCopy = gameCopy;
+		this.game = game;
+		this.hours = hours;
+		this.minutes = minutes;
+		this.seconds = seconds;
 	}
 	
 	public SavedGame(NumbersPanel numbersPanel, TimeKeeper timeKeeper ){
@@ -29,59 +29,32 @@ public class SavedGame implements Serializable {
 		this.hours = timeKeeper.getHours();
 		this.minutes = timeKeeper.getMinutes();
 		this.seconds = timeKeeper.getSeconds();
-		this.userInputCopy = this.copyUserInput(numbersPanel);
 	}
 	
 	/**
-	 * Creates a two dimensional array of numbers from the specified NumbersPanel (the Sudoku board)
+	 * Creates a board with the numbers from the specified NumbersPanel (the Sudoku board),
+	 * including which cells are specified by the game and which are filled by the user
 	 * 
 	 * 
 	 * @param numbersPanel - the provided Sudoku board  
-	 * @return - a two dimensional array of numbers from the Sudoku board 
+	 * @return - a board with the numbers from the Sudoku board 
 	 */
-	private int[][] copyGame (NumbersPanel numbersPanel){
-		int[][] game = new int[9][9];
-		for (int i =0 ; i < 9; i++){
-			for (int j= 0; j< 9; j++){
-				game[i][j] = numbersPanel.getUserGame()[i][j];
-			}
-		}
-		return game;
-	}
-	
-	/**
-	 * Gets the boolean matrix indicating whether a cells is supposed to be filled by the user or it is 
-	 * specified by the game 
-	 * 
-	 * @param numbersPanel
-	 * @return 
-	 */	
-	private boolean[][] copyUserInput (NumbersPanel numbersPanel){
-		boolean[][] userInput = new boolean[9][9];
-		for (int i =0 ; i < 9; i++){
-			for (int j= 0; j< 9; j++){
-				userInput[i][j] = numbersPanel.getUserInput()[i][j];
-			}
-		}
-		return userInput;
+	private Board copyGame (NumbersPanel numbersPanel){
+		return numbersPanel.getUserGame();
 	}
 	
 	/**
 	 * Prints the game on the console for debugging
 	 */
 	public void printGame(){
-		for (int y = 0; y < 9; y++) {
-			for (int x = 0; x < 9; x++)
-				System.out.print(" " + this.gameCopy[y][x]);
+		for (int y = 0; y < this.gameCopy.getSize(); y++) {
+			for (int x = 0; x < this.gameCopy.getSize(); x++)
+				System.out.print(" " + this.gameCopy.get(x, y));
 			System.out.println();
 		}
 	}
 
-	public boolean[][] getUserInput(){
-		return this.userInputCopy;
-	}
-	
-	public int[][] getGameCopy() {
+	public Board getGameCopy() {
 		return gameCopy;
 	}
 	
@@ -0,0 +1,69 @@
+package ivanov.sudoku;
+
+import java.util.Random;
+
+/**
+ * A Sudoku solving backend. {@link Game} uses it both to generate a fully
+ * solved board and to check that a game has only one solution.<br />
+ * Implementations keep their working state between calls and are not thread
+ * safe, use {@link SolverFactory#get()} to obtain the solver of the current
+ * thread.
+ *
+ */
+public interface Solver {
+
+	/**
+	 * Fills all empty cells of given game with a solution, trying the
+	 * candidates in random order.
+	 *
+	 * @param game
+	 *            Game to fill, 'new Board()' generates a new solution.
+	 * @param random
+	 *            Source of the candidate order, null for a fixed order.
+	 * @return True if the game was filled, false if it has no solution (the
+	 *         game is left unchanged).
+	 */
+	boolean solve(Board game, Random random);
+
+	/**
+	 * Counts the solutions of given game, stopping as soon as the limit is
+	 * reached.
+	 *
+	 * @param game
+	 *            Game to check, it is not modified.
+	 * @param limit
+	 *            Number of solutions after which the search stops.
+	 * @return Number of solutions found, at most limit.
+	 */
+	int countSolutions(Board game, int limit);
+
+	/**
+	 * Checks whether given game has a solution in which an empty cell holds
+	 * another number than given one. Removing a clue from a game with one
+	 * solution leaves it unique exactly when this is false for the removed
+	 * number, which takes a single search for one solution instead of a
+	 * search for two over the whole game.
+	 *
+	 * @param game
+	 *            Game to check, it is not modified.
+	 * @param position
+	 *            Index of an empty cell, see {@link Board#get(int)}.
+	 * @param number
+	 *            Number the cell must not hold.
+	 * @return True if such a solution exists.
+	 */
+	boolean hasSolutionWithout(Board game, int position, int number);
+
+	/**
+	 * Checks like {@link #hasSolutionWithout(Board, int, int)}, but gives up
+	 * after visiting given number of search nodes and then returns true, so
+	 * that a caller which removes clues keeps a clue it could not prove
+	 * redundant in time. Used on large boards, where the search may take
+	 * very long.
+	 *
+	 * @param budget
+	 *            Number of search nodes after which the search gives up.
+	 */
+	boolean hasSolutionWithout(Board game, int position, int number,
+			long budget);
+}
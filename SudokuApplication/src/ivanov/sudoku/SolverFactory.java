@@ -0,0 +1,53 @@
+package ivanov.sudoku;
+
+/**
+ * Creates the {@link Solver} backends and hands out one solver per thread.
+ * The backend is chosen with the system property {@value #PROPERTY}, either
+ * {@value #BACKTRACKING} (the default) or {@value #DANCING_LINKS}, e.g.
+ * <code>-Dsudoku.solver=dlx</code>.
+ *
+ */
+public class SolverFactory {
+	public static final String PROPERTY = "sudoku.solver";
+	public static final String BACKTRACKING = "backtracking";
+	public static final String DANCING_LINKS = "dlx";
+
+	private static final String BACKEND = System.getProperty(PROPERTY,
+			BACKTRACKING);
+
+	private static final ThreadLocal<Solver> SOLVERS = new ThreadLocal<Solver>() {
+		@Override
+		protected Solver initialValue() {
+			return create(BACKEND);
+		}
+	};
+
+	private SolverFactory() {
+	}
+
+	/**
+	 * Returns the solver of the calling thread, using the configured backend.
+	 *
+	 * @return Solver owned by the current thread.
+	 */
+	public static Solver get() {
+		return SOLVERS.get();
+	}
+
+	/**
+	 * Creates a new solver of given backend.
+	 *
+	 * @param backend
+	 *            Name of the backend, {@value #BACKTRACKING} or
+	 *            {@value #DANCING_LINKS}.
+	 * @return A new solver.
+	 */
+	public static Solver create(String backend) {
+		if (BACKTRACKING.equalsIgnoreCase(backend)) {
+			return new BacktrackingSolver();
+		} else if (DANCING_LINKS.equalsIgnoreCase(backend)) {
+			return new DancingLinksSolver();
+		}
+		throw new IllegalArgumentException("Unknown solver: " + backend);
+	}
+}
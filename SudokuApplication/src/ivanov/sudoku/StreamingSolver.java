@@ -0,0 +1,300 @@
+package ivanov.sudoku;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves, checks or rates files of games in the one-line format of
+ * {@link PuzzleFormat} which may be far larger than the memory. The input is
+ * read through a reused NIO buffer and copied byte by byte into fixed size
+ * batches, without creating a String per line. The batches are processed on a
+ * worker pool with a bounded number of batches in flight and written in input
+ * order, so the memory used does not depend on the size of the file.<br />
+ * Blank lines and lines starting with '#' are skipped, every other line gives
+ * exactly one output line.
+ *
+ */
+public class StreamingSolver {
+	/**
+	 * What is written for every game.
+	 */
+	public enum Task {
+		/** The solution, or "unsolvable". */
+		SOLVE,
+		/** "unique", "multiple", "none" or "invalid". */
+		CHECK,
+		/** The rating of {@link DifficultyRater}, or "invalid". */
+		RATE
+	}
+
+	private static final int LENGTH = PuzzleFormat.LENGTH;
+	private static final int LINE = 16; // Longest status line, with '\n'.
+	private static final byte[] UNSOLVABLE = bytes("unsolvable\n");
+	private static final byte[] UNIQUE = bytes("unique\n");
+	private static final byte[] MULTIPLE = bytes("multiple\n");
+	private static final byte[] NONE = bytes("none\n");
+	private static final byte[] INVALID = bytes("invalid\n");
+
+	private final Task task;
+	private final int threads;
+	private final int batchSize;
+	private final int maxInFlight;
+
+	/**
+	 * Creates a solver using all available processors.
+	 *
+	 * @param task
+	 *            - what to write for every game
+	 */
+	public StreamingSolver(Task task) {
+		this(task, Runtime.getRuntime().availableProcessors(), 4096,
+				2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a solver.
+	 *
+	 * @param task
+	 *            - what to write for every game
+	 * @param threads
+	 *            - the number of worker threads
+	 * @param batchSize
+	 *            - the number of games processed by a worker at once
+	 * @param maxInFlight
+	 *            - the number of batches read but not yet written
+	 */
+	public StreamingSolver(Task task, int threads, int batchSize,
+			int maxInFlight) {
+		if (threads < 1 || batchSize < 1 || maxInFlight < 1)
+			throw new IllegalArgumentException("Invalid solver configuration");
+		this.task = task;
+		this.threads = threads;
+		this.batchSize = batchSize;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Processes all games of the input and writes one line for each of them.
+	 * The channels are not closed.
+	 *
+	 * @param in
+	 *            - the channel to read the games from
+	 * @param out
+	 *            - the channel to write the results to
+	 * @return the number of games processed
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	public long process(ReadableByteChannel in, WritableByteChannel out)
+			throws IOException {
+		ExecutorService workers = Executors.newFixedThreadPool(this.threads);
+		ArrayDeque<Batch> free = new ArrayDeque<Batch>();
+		ArrayDeque<Future<Batch>> inFlight = new ArrayDeque<Future<Batch>>();
+		for (int i = 0; i <= this.maxInFlight; i++) {
+			free.add(new Batch(this.batchSize));
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+		Batch batch = free.poll();
+		long games = 0;
+		int length = 0; // Bytes of the current line.
+		boolean comment = false;
+		try {
+			while (in.read(buffer) >= 0) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					byte b = buffer.get();
+					if (b == '\n') {
+						if (length > 0 && !comment) {
+							batch.finishRecord(length);
+							games++;
+							if (batch.count == this.batchSize) {
+								submit(batch, workers, inFlight, free, out);
+								batch = free.poll();
+							}
+						}
+						length = 0;
+						comment = false;
+					} else if (b != '\r') {
+						if (length == 0)
+							comment = b == '#';
+						if (length < LENGTH)
+							batch.input[batch.count * LENGTH + length] = b;
+						length++;
+					}
+				}
+				buffer.clear();
+			}
+			if (length > 0 && !comment) {
+				batch.finishRecord(length);
+				games++;
+			}
+			if (batch.count > 0)
+				submit(batch, workers, inFlight, free, out);
+			while (!inFlight.isEmpty()) {
+				write(inFlight.poll(), out);
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+		return games;
+	}
+
+	/**
+	 * Hands a full batch to the workers, writing the oldest batch first when
+	 * too many are in flight.
+	 */
+	private void submit(final Batch batch, ExecutorService workers,
+			ArrayDeque<Future<Batch>> inFlight, ArrayDeque<Batch> free,
+			WritableByteChannel out) throws IOException {
+		inFlight.add(workers.submit(new Callable<Batch>() {
+			@Override
+			public Batch call() {
+				batch.process(task);
+				return batch;
+			}
+		}));
+		if (inFlight.size() >= this.maxInFlight)
+			free.add(write(inFlight.poll(), out));
+	}
+
+	/**
+	 * Waits for a batch and writes its results.
+	 *
+	 * @return the written batch, emptied for reuse
+	 */
+	private static Batch write(Future<Batch> future, WritableByteChannel out)
+			throws IOException {
+		Batch batch;
+		try {
+			batch = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while solving", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Solving failed", e.getCause());
+		}
+		ByteBuffer output = ByteBuffer.wrap(batch.output, 0,
+				batch.outputLength);
+		while (output.hasRemaining()) {
+			out.write(output);
+		}
+		batch.count = 0;
+		batch.outputLength = 0;
+		return batch;
+	}
+
+	private static byte[] bytes(String s) {
+		byte[] bytes = new byte[s.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) s.charAt(i);
+		}
+		return bytes;
+	}
+
+	/**
+	 * A reusable block of games read from the input and their results.
+	 *
+	 */
+	private static class Batch {
+		private final byte[] input; // 81 bytes per game.
+		private final byte[] output;
+		private final Board game = new Board();
+		private int count;
+		private int outputLength;
+
+		private Batch(int size) {
+			this.input = new byte[size * LENGTH];
+			this.output = new byte[size * Math.max(LENGTH + 1, LINE)];
+		}
+
+		/**
+		 * Completes the game being read, a line which is too short is marked
+		 * invalid.
+		 */
+		private void finishRecord(int length) {
+			if (length < LENGTH)
+				this.input[this.count * LENGTH] = 0;
+			this.count++;
+		}
+
+		/**
+		 * Solves, checks or rates all games of the batch with the solver of the
+		 * current thread.
+		 */
+		private void process(Task task) {
+			Solver solver = SolverFactory.get();
+			for (int i = 0; i < this.count; i++) {
+				boolean valid = this.parse(i);
+				if (task == Task.SOLVE) {
+					if (valid && solver.solve(this.game, null)) {
+						for (int j = 0; j < LENGTH; j++) {
+							this.output[this.outputLength++] = (byte) ('0' + this.game.get(j));
+						}
+						this.output[this.outputLength++] = '\n';
+					} else {
+						this.append(UNSOLVABLE);
+					}
+				} else if (!valid) {
+					this.append(INVALID);
+				} else if (task == Task.RATE) {
+					int rating = DifficultyRater.get().rate(this.game);
+					if (rating < 0) {
+						this.append(INVALID);
+					} else {
+						this.appendNumber(rating);
+					}
+				} else {
+					int solutions = solver.countSolutions(this.game, 2);
+					this.append(solutions == 0 ? NONE : solutions == 1 ? UNIQUE
+							: MULTIPLE);
+				}
+			}
+		}
+
+		/**
+		 * Reads game i of the batch into the game board.
+		 *
+		 * @return false if the game contains an invalid character
+		 */
+		private boolean parse(int i) {
+			int offset = i * LENGTH;
+			for (int j = 0; j < LENGTH; j++) {
+				int c = this.input[offset + j];
+				if (c >= '1' && c <= '9') {
+					this.game.set(j, c - '0');
+				} else if (c == '0' || c == '.') {
+					this.game.set(j, 0);
+				} else {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void appendNumber(int number) {
+			int digits = 1;
+			for (int n = number; n >= 10; n /= 10) {
+				digits++;
+			}
+			for (int i = digits - 1; i >= 0; i--, number /= 10) {
+				this.output[this.outputLength + i] = (byte) ('0' + number % 10);
+			}
+			this.outputLength += digits;
+			this.output[this.outputLength++] = '\n';
+		}
+
+		private void append(byte[] line) {
+			System.arraycopy(line, 0, this.output, this.outputLength,
+					line.length);
+			this.outputLength += line.length;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package ivanov.sudoku;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A headless command line entry point for batch jobs. It generates, solves and
+ * checks games in the one-line format of {@link PuzzleFormat} and never loads
+ * any AWT or Swing class, so it runs in containers without a display.<br />
+ * <br />
+ * Usage:<br />
+ * <code>generate COUNT [easy|medium|hard|expert] [SEED]</code> - writes COUNT
+ * new games, one per line, no two of them equivalent<br />
+ * <code>library FILE COUNT [easy|medium|hard|expert] [SEED]</code> - appends
+ * COUNT new rated games to a {@link PuzzleLibrary} file, skipping games
+ * equivalent to one of the library<br />
+ * <code>solve [FILE]</code> - writes the solution of every game, or
+ * "unsolvable"<br />
+ * <code>check [FILE]</code> - writes "unique", "multiple", "none" or "invalid"
+ * for every game<br />
+ * <code>rate [FILE]</code> - writes the rating of every game by the human
+ * techniques it needs, or "invalid"<br />
+ * Games are read from standard input when no file is given, empty lines and
+ * lines starting with '#' are skipped. Solving and checking stream the input
+ * through the {@link StreamingSolver}, so files of any size can be processed.
+ *
+ */
+public class SudokuCli {
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			usage();
+			return;
+		}
+		try {
+			String command = args[0];
+			if (command.equals("generate") && args.length >= 2) {
+				generate(args);
+			} else if (command.equals("library") && args.length >= 3) {
+				library(args);
+			} else if (command.equals("solve") && args.length <= 2) {
+				process(StreamingSolver.Task.SOLVE, args);
+			} else if (command.equals("check") && args.length <= 2) {
+				process(StreamingSolver.Task.CHECK, args);
+			} else if (command.equals("rate") && args.length <= 2) {
+				process(StreamingSolver.Task.RATE, args);
+			} else {
+				usage();
+			}
+		} catch (IOException e) {
+			System.err.println("I/O error: " + e.getMessage());
+			System.exit(1);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			usage();
+		}
+	}
+
+	/**
+	 * Generates games on all cores and writes them as they are ready.
+	 */
+	private static void generate(String[] args) throws IOException {
+		final Writer out = new BufferedWriter(new OutputStreamWriter(
+				System.out, ASCII), 1 << 16);
+		int count = Integer.parseInt(args[1]);
+		int difficulty = args.length > 2 ? parseDifficulty(args[2]) : Game.EASY;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : System
+				.nanoTime();
+		final IOException[] error = new IOException[1];
+		final PuzzleIndex index = new PuzzleIndex();
+		BulkGenerator generator = new BulkGenerator();
+		BulkGenerator.Statistics statistics = generator.generate(count,
+				difficulty, seed, new PuzzleSink() {
+					@Override
+					public boolean accept(Game game) {
+						if (!index.add(game.getGame()))
+							return false;
+						String line = PuzzleFormat.format(game.getGame());
+						synchronized (out) {
+							try {
+								out.write(line);
+								out.write('\n');
+							} catch (IOException e) {
+								error[0] = e;
+							}
+						}
+						return true;
+					}
+				});
+		generator.shutdown();
+		if (error[0] != null)
+			throw error[0];
+		out.flush();
+		System.err.println(statistics);
+	}
+
+	/**
+	 * Generates games on all cores and appends them to a puzzle library with
+	 * their rating.
+	 */
+	private static void library(String[] args) throws IOException {
+		int count = Integer.parseInt(args[2]);
+		final int difficulty = args.length > 3 ? parseDifficulty(args[3])
+				: Game.EASY;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System
+				.nanoTime();
+		final IOException[] error = new IOException[1];
+		BulkGenerator generator = new BulkGenerator();
+		BulkGenerator.Statistics statistics;
+		try (final PuzzleLibraryWriter writer = new PuzzleLibraryWriter(
+				Paths.get(args[1]))) {
+			statistics = generator.generate(count, difficulty, seed,
+					new PuzzleSink() {
+						@Override
+						public boolean accept(Game game) {
+							try {
+								return writer.append(game, difficulty,
+										game.getRating());
+							} catch (IOException e) {
+								error[0] = e;
+								return true;
+							}
+						}
+					});
+			generator.shutdown();
+			if (error[0] != null)
+				throw error[0];
+		}
+		System.err.println(statistics);
+	}
+
+	/**
+	 * Solves, checks or rates all games of the input file, or standard input, with
+	 * the streaming solver.
+	 */
+	private static void process(StreamingSolver.Task task, String[] args)
+			throws IOException {
+		long start = System.nanoTime();
+		long games;
+		try (ReadableByteChannel in = args.length > 1 ? FileChannel.open(
+				Paths.get(args[1]), StandardOpenOption.READ) : Channels
+				.newChannel(System.in)) {
+			WritableByteChannel out = Channels.newChannel(System.out);
+			games = new StreamingSolver(task).process(in, out);
+			System.out.flush();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.println(String.format("%d puzzles in %.3f s (%.1f puzzles/s)",
+				games, seconds, games / seconds));
+	}
+
+	private static int parseDifficulty(String name) {
+		if (name.equalsIgnoreCase("easy"))
+			return Game.EASY;
+		if (name.equalsIgnoreCase("medium"))
+			return Game.MEDIUM;
+		if (name.equalsIgnoreCase("hard"))
+			return Game.HARD;
+		if (name.equalsIgnoreCase("expert"))
+			return Game.EXPERT;
+		throw new IllegalArgumentException("Unknown difficulty: " + name);
+	}
+
+	private static void usage() {
+		System.err.println("Usage: SudokuCli generate COUNT [easy|medium|hard|expert] [SEED]");
+		System.err.println("       SudokuCli library FILE COUNT [easy|medium|hard|expert] [SEED]");
+		System.err.println("       SudokuCli solve [FILE]");
+		System.err.println("       SudokuCli check [FILE]");
+		System.err.println("       SudokuCli rate [FILE]");
+	}
+}
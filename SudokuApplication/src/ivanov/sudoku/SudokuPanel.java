@@ -5,11 +5,14 @@ import java.awt.Frame;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 
 import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 
 /**
  * This class represents the panel containing Sudoku board containing all the
@@ -45,7 +48,8 @@ public class SudokuPanel extends JPanel {
 	}
 
 	/**
-	 * Generates the bottom panel with the check button and the timer
+	 * Generates the bottom panel with the check button, the timer and the
+	 * progress bar shown while a new game is being generated
 	 * @param timeKeeper
 	 */
 	private void generateBottomPanel(TimeKeeper timeKeeper) {
@@ -55,9 +59,62 @@ public class SudokuPanel extends JPanel {
 		checkButton
 				.addActionListener(new CheckButtonListener(this, timeKeeper));
 		bottomPanel.add(checkButton);
+		this.generateProgressPanel(bottomPanel);
 		this.add(bottomPanel, BorderLayout.SOUTH);
 	}
 
+	/**
+	 * Adds the progress bar and the cancel button to the bottom panel, they
+	 * are only visible while a new game is being generated
+	 * @param bottomPanel
+	 */
+	private void generateProgressPanel(JPanel bottomPanel) {
+		JProgressBar progressBar = new JProgressBar();
+		progressBar.setIndeterminate(true);
+		progressBar.setString("Generating game");
+		progressBar.setStringPainted(true);
+		JButton cancelButton = new JButton("Cancel");
+		cancelButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				numbersPanel.cancelGeneration();
+			}
+		});
+		GenerationListener listener = new GenerationListener(progressBar,
+				cancelButton);
+		listener.setVisible(this.numbersPanel.isGenerating());
+		this.numbersPanel.addPropertyChangeListener(
+				NumbersPanel.GENERATING_PROPERTY, listener);
+		bottomPanel.add(progressBar);
+		bottomPanel.add(cancelButton);
+	}
+
+	/**
+	 * Shows the progress bar and the cancel button while the NumbersPanel is
+	 * generating a game
+	 *
+	 */
+	private class GenerationListener implements PropertyChangeListener {
+		private JProgressBar progressBar;
+		private JButton cancelButton;
+
+		private GenerationListener(JProgressBar progressBar,
+				JButton cancelButton) {
+			this.progressBar = progressBar;
+			this.cancelButton = cancelButton;
+		}
+
+		private void setVisible(boolean visible) {
+			this.progressBar.setVisible(visible);
+			this.cancelButton.setVisible(visible);
+		}
+
+		@Override
+		public void propertyChange(PropertyChangeEvent evt) {
+			this.setVisible((Boolean) evt.getNewValue());
+		}
+	}
+
 	/**
 	 * A ActionListener for the check button at the bottom which checks the
 	 * Sudoku game and stops the timekeeper
@@ -76,6 +133,9 @@ public class SudokuPanel extends JPanel {
 
 		@Override
 		public void actionPerformed(ActionEvent e) {
+			if (numbersPanel.getGame() == null) {
+				return; // The game is still being generated.
+			}
 			this.timekeeper.getTimer().stop();
 			JOptionPane checkPopup = new JOptionPane();
 			if (numbersPanel.checkGame()) {
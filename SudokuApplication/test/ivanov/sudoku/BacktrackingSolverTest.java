@@ -0,0 +1,83 @@
+package ivanov.sudoku;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the search of the {@link BacktrackingSolver} does not allocate
+ * once its workspace exists, using the allocation counter of the current
+ * thread. The JIT compiler may allocate now and then while the searches are
+ * compiled, so the least of a few runs is taken; a search which allocated per
+ * node would allocate on every run.
+ *
+ */
+public class BacktrackingSolverTest {
+	private static final String[] PUZZLES = {
+			"003020600900305001001806400008102900700000008006708200002609500800203009005010300",
+			"100007090030020008009600500005300900010080002600004000300000010040000007007000300",
+			"000000000000003085001020000000507000004000100090000000500000073002010000000040009" };
+
+	private static final int RUNS = 10;
+
+	@Test
+	public void searchDoesNotAllocate() {
+		com.sun.management.ThreadMXBean threads = threadBean();
+		Solver solver = new BacktrackingSolver();
+		Board[] games = new Board[PUZZLES.length];
+		Board work = new Board();
+		for (int i = 0; i < PUZZLES.length; i++) {
+			games[i] = PuzzleFormat.parse(PUZZLES[i]);
+		}
+		Random random = new Random(1);
+		search(solver, games, work, random); // Warms up the workspace.
+		long id = Thread.currentThread().getId();
+		long overhead = measureOverhead(threads, id);
+		long allocated = Long.MAX_VALUE;
+		for (int run = 0; run < RUNS; run++) {
+			long before = threads.getThreadAllocatedBytes(id);
+			search(solver, games, work, random);
+			allocated = Math.min(allocated, threads.getThreadAllocatedBytes(id)
+					- before - overhead);
+		}
+		assertEquals("Bytes allocated by the search", 0, Math.max(0, allocated));
+	}
+
+	private static void search(Solver solver, Board[] games, Board work,
+			Random random) {
+		for (Board game : games) {
+			assertEquals(1, solver.countSolutions(game, 2));
+			work.copyFrom(game);
+			solver.solve(work, random);
+			solver.hasSolutionWithout(game, 0, 1);
+		}
+	}
+
+	/**
+	 * Returns the bytes allocated by reading the counter itself.
+	 */
+	private static long measureOverhead(
+			com.sun.management.ThreadMXBean threads, long id) {
+		long overhead = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			long before = threads.getThreadAllocatedBytes(id);
+			overhead = Math.min(overhead,
+					threads.getThreadAllocatedBytes(id) - before);
+		}
+		return overhead;
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+		assumeTrue(counters.isThreadAllocatedMemorySupported());
+		counters.setThreadAllocatedMemoryEnabled(true);
+		return counters;
+	}
+}
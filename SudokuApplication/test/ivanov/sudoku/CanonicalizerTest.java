@@ -0,0 +1,77 @@
+package ivanov.sudoku;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the canonical form is the same for all equivalent games and
+ * that it is its own canonical form.
+ *
+ */
+public class CanonicalizerTest {
+	private static final int GAMES = 40;
+	private static final int TRANSFORMS = 20;
+
+	@Test
+	public void findsTheSmallestForm() {
+		// Found by trying all arrangements; the search used to end with a
+		// larger form of this game.
+		String smallest = "...........1.23.45..264.37...8.......2..389.7.4....238..9......2..389...8..5.412.";
+		String larger = "...........1.23.45..264.37...8.......2.398....9.5.412...9......2...398.74.....239";
+		assertEquals(smallest, canonical(PuzzleFormat.parse(smallest)));
+		assertEquals(smallest, canonical(PuzzleFormat.parse(larger)));
+	}
+
+	@Test
+	public void sameFormForEquivalentGames() {
+		Random random = new Random(18);
+		int[] difficulties = { Game.EASY, Game.MEDIUM, Game.HARD, Game.EXPERT };
+		for (int i = 0; i < GAMES; i++) {
+			Board game = new Game(difficulties[i % difficulties.length],
+					random).getGame();
+			assertInvariant(game, random);
+		}
+	}
+
+	@Test
+	public void sameFormForSymmetricGames() {
+		Random random = new Random(19);
+		Board empty = new Board();
+		Board diagonal = new Board();
+		Board corner = new Board();
+		for (int i = 0; i < 9; i++) {
+			diagonal.set(i, i, i + 1);
+		}
+		for (int i = 0; i < 3; i++) {
+			corner.set(i, i, i + 1);
+		}
+		assertInvariant(empty, random);
+		assertInvariant(diagonal, random);
+		assertInvariant(corner, random);
+		assertInvariant(Game.generateSolution(random), random);
+	}
+
+	private static void assertInvariant(Board game, Random random) {
+		String form = canonical(game);
+		assertEquals("Canonical form of the form", form,
+				canonical(Canonicalizer.get().canonicalize(game)));
+		Board variant = new Board();
+		for (int i = 0; i < TRANSFORMS; i++) {
+			PuzzleTransform.random(random).apply(game, variant);
+			assertEquals("Canonical form of a variant", form,
+					canonical(variant));
+		}
+	}
+
+	private static String canonical(Board game) {
+		Board form = Canonicalizer.get().canonicalize(game);
+		StringBuilder text = new StringBuilder();
+		for (int position = 0; position < Board.CELLS; position++) {
+			text.append(PuzzleFormat.symbol(form.get(position)));
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,69 @@
+package ivanov.sudoku;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the candidates kept by the {@link HintEngine} against candidates
+ * computed from the whole board.
+ *
+ */
+public class HintEngineTest {
+
+	@Test
+	public void erasingADuplicateKeepsTheOtherOne() {
+		HintEngine engine = new HintEngine(Board.BOX_SIZE);
+		engine.set(0, 5);
+		engine.set(3, 5);
+		engine.set(3, 0);
+		// 5 is still in the first row, at r1c1.
+		assertEquals(0x1FF & ~ConstraintModel.bit(5), engine.getCandidates(8));
+		assertEquals(0x1FF, engine.getCandidates(80));
+	}
+
+	@Test
+	public void candidatesFollowRandomChanges() {
+		Random random = new Random(24);
+		for (int boxSize = 2; boxSize <= 4; boxSize++) {
+			int size = boxSize * boxSize;
+			HintEngine engine = new HintEngine(boxSize);
+			Board board = new Board(boxSize);
+			for (int step = 0; step < 5000; step++) {
+				int position = random.nextInt(board.getCellCount());
+				int number = random.nextInt(3) == 0 ? 0 : 1 + random
+						.nextInt(size);
+				engine.set(position, number);
+				board.set(position, number);
+				int cell = random.nextInt(board.getCellCount());
+				assertEquals("Candidates of cell " + cell + " at step "
+						+ step, candidates(board, cell),
+						engine.getCandidates(cell));
+			}
+		}
+	}
+
+	/**
+	 * Returns the numbers which no peer of an empty cell holds.
+	 */
+	private static int candidates(Board board, int position) {
+		if (board.get(position) != 0)
+			return 0;
+		int size = board.getSize();
+		int boxSize = board.getBoxSize();
+		int x = position % size;
+		int y = position / size;
+		int used = 0;
+		for (int other = 0; other < board.getCellCount(); other++) {
+			int otherX = other % size;
+			int otherY = other / size;
+			if (board.get(other) != 0
+					&& (otherX == x || otherY == y || (otherX / boxSize == x
+							/ boxSize && otherY / boxSize == y / boxSize)))
+				used |= ConstraintModel.bit(board.get(other));
+		}
+		return ((1 << size) - 1) & ~used;
+	}
+}
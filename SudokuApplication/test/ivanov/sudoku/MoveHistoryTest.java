@@ -0,0 +1,67 @@
+package ivanov.sudoku;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the boards computed by {@link MoveHistory#jumpTo(int, Board)}
+ * against the boards kept after every move.
+ *
+ */
+public class MoveHistoryTest {
+	private static final int MOVES = 3 * MoveHistory.SNAPSHOT_INTERVAL + 10;
+
+	@Test
+	public void jumpsAcrossSnapshots() {
+		Random random = new Random(25);
+		Board board = new Board();
+		MoveHistory history = new MoveHistory(board);
+		Board[] boards = makeMoves(board, history, random);
+		Board target = new Board();
+		int[] indices = { 64, 70, 63, 5, 128, 0, 65, 192, MOVES, 127, 40 };
+		for (int index : indices) {
+			history.jumpTo(index, target);
+			assertEquals("Board after move " + index, boards[index], target);
+			board.copyFrom(target);
+		}
+	}
+
+	@Test
+	public void jumpsToEveryMove() {
+		Random random = new Random(26);
+		Board board = new Board();
+		MoveHistory history = new MoveHistory(board);
+		Board[] boards = makeMoves(board, history, random);
+		Board target = new Board();
+		for (int i = 0; i < 500; i++) {
+			int index = random.nextInt(MOVES + 1);
+			history.jumpTo(index, target);
+			assertEquals("Board after move " + index, boards[index], target);
+			board.copyFrom(target);
+		}
+	}
+
+	/**
+	 * Makes random moves on a board, recording each after it is made as the
+	 * board does.
+	 *
+	 * @return the board after every number of moves
+	 */
+	private static Board[] makeMoves(Board board, MoveHistory history,
+			Random random) {
+		Board[] boards = new Board[MOVES + 1];
+		boards[0] = new Board(board);
+		for (int i = 1; i <= MOVES; i++) {
+			int cell = random.nextInt(Board.CELLS);
+			int old = board.get(cell);
+			int number = (old + 1 + random.nextInt(9)) % 10;
+			board.set(cell, number);
+			history.record(cell, old, number);
+			boards[i] = new Board(board);
+		}
+		return boards;
+	}
+}
@@ -0,0 +1,36 @@
+package ivanov.sudoku;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the board while no game is set on it.
+ *
+ */
+public class NumbersPanelTest {
+	private NumbersPanel panel;
+
+	@Before
+	public void setUp() {
+		this.panel = new NumbersPanel();
+	}
+
+	@After
+	public void tearDown() {
+		this.panel.cancelGeneration();
+		this.panel.getGamePool().shutdown();
+	}
+
+	@Test
+	public void checkWithoutGameFails() {
+		// A new board size drops the game, the board is empty and has no
+		// cell unlike a solution.
+		this.panel.setBoxSize(4);
+		assertNull(this.panel.getGame());
+		assertFalse(this.panel.checkGame());
+	}
+}
@@ -0,0 +1,46 @@
+package ivanov.sudoku;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks the built-in games the variants are made from.
+ *
+ */
+public class PuzzleVariantsTest {
+
+	/**
+	 * Games with equivalent solutions may differ by a clue or two, so the
+	 * solutions are compared rather than the games.
+	 */
+	@Test
+	public void builtInGamesHaveDistinctSolutions() {
+		Set<Board> forms = new HashSet<Board>();
+		for (int difficulty : GamePool.DIFFICULTIES) {
+			for (Game game : PuzzleVariants.getGames(difficulty)) {
+				assertTrue("Equivalent built-in games",
+						forms.add(Canonicalizer.get().canonicalize(
+								game.getSolution())));
+			}
+		}
+	}
+
+	@Test
+	public void builtInGamesAreUniqueAndInTheirBand() {
+		for (int difficulty : GamePool.DIFFICULTIES) {
+			for (Game game : PuzzleVariants.getGames(difficulty)) {
+				assertEquals(1,
+						SolverFactory.get().countSolutions(game.getGame(), 2));
+				assertTrue("Rating below the band of " + difficulty,
+						game.getRating() >= Game.getMinRating(difficulty));
+				assertTrue("Rating above the band of " + difficulty,
+						game.getRating() <= Game.getMaxRating(difficulty));
+			}
+		}
+	}
+}
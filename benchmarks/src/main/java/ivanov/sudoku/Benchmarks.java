@@ -0,0 +1,24 @@
+package ivanov.sudoku;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, so allocation rates are
+ * reported next to the timings. Accepts the usual JMH command line options,
+ * e.g. <code>java -jar benchmarks/target/benchmarks.jar Solver -p set=hard</code>.
+ *
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws RunnerException,
+			CommandLineOptionException {
+		CommandLineOptions options = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder().parent(options)
+				.addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,51 @@
+package ivanov.sudoku;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the check of the user input against the solution, with a board
+ * where a few of the user's numbers are wrong.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckerBenchmark {
+	private Game game;
+	private Board userGame;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(7);
+		this.game = new Game(Game.MEDIUM, random);
+		this.userGame = new Board(this.game.getGame());
+		Board solution = this.game.getSolution();
+		for (int i = 0; i < Board.CELLS; i++) {
+			if (!this.userGame.isGiven(i)) {
+				this.userGame.set(i, random.nextInt(10) == 0 ? solution.get(i)
+						% 9 + 1 : solution.get(i));
+			}
+		}
+	}
+
+	@Benchmark
+	public BitSet checkUserGame() {
+		return this.game.checkUserGame(this.userGame);
+	}
+}
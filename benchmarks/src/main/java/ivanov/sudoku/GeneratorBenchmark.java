@@ -0,0 +1,56 @@
+package ivanov.sudoku;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the generation of complete games for each difficulty (easy,
+ * medium, hard and expert rating bands), see {@link SolutionBenchmark} for
+ * the solutions alone. The random
+ * number generator is reseeded before every iteration, so every run generates
+ * the same sequence of games. The cost per game of each difficulty is
+ * measured with
+ * <code>java -jar benchmarks/target/benchmarks.jar GeneratorBenchmark.newGame</code>
+ * on a single thread. The bands above easy cost far more than easy, about 12
+ * times for medium and 24 for hard and expert: about seven of every eight
+ * solutions dug for them end up solved by singles and are dropped, and the
+ * ratings of the last removals, at 28 to 35 clues, take most of the time.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+	private static final long SEED = 20141103L;
+
+	@Param({ "20", "10", "-1", "-2" })
+	public int difficulty;
+
+	private Random random;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		this.random = new Random(SEED);
+	}
+
+	@Benchmark
+	public Game newGame() {
+		return new Game(this.difficulty, this.random);
+	}
+}
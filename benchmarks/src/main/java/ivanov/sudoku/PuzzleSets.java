@@ -0,0 +1,56 @@
+package ivanov.sudoku;
+
+/**
+ * Fixed puzzle sets used by the benchmarks, so every run measures exactly the
+ * same work. All puzzles have a unique solution.
+ *
+ */
+final class PuzzleSets {
+	static final String EASY = "easy";
+	static final String HARD = "hard";
+	static final String SEVENTEEN = "seventeen";
+	static final String PATHOLOGICAL = "pathological";
+
+	private static final String[] EASY_PUZZLES = {
+			"003020600900305001001806400008102900700000008006708200002609500800203009005010300",
+			"200080300060070084030500209000105408000000000402706000301007040720040060004010003",
+			"000000907000420180000705026100904000050000040000507009920108000034059000507000000" };
+
+	private static final String[] HARD_PUZZLES = {
+			"100007090030020008009600500005300900010080002600004000300000010040000007007000300",
+			"800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+			"000000039000001005003050800008090006070002000100400000009080050020000600400700000" };
+
+	private static final String[] SEVENTEEN_PUZZLES = {
+			"000000010400000000020000000000050407008000300001090000300400200050100000000806000",
+			"000000012000035000000600070700000300000400800100000000000120000080000040050000600" };
+
+	// Hard for naive backtracking: the top rows are nearly empty.
+	private static final String[] PATHOLOGICAL_PUZZLES = { "000000000000003085001020000000507000004000100090000000500000073002010000000040009" };
+
+	private PuzzleSets() {
+	}
+
+	/**
+	 * Returns the games of the named set.
+	 */
+	static Board[] get(String name) {
+		String[] lines;
+		if (EASY.equals(name)) {
+			lines = EASY_PUZZLES;
+		} else if (HARD.equals(name)) {
+			lines = HARD_PUZZLES;
+		} else if (SEVENTEEN.equals(name)) {
+			lines = SEVENTEEN_PUZZLES;
+		} else if (PATHOLOGICAL.equals(name)) {
+			lines = PATHOLOGICAL_PUZZLES;
+		} else {
+			throw new IllegalArgumentException("Unknown puzzle set: " + name);
+		}
+		Board[] games = new Board[lines.length];
+		for (int i = 0; i < lines.length; i++) {
+			games[i] = PuzzleFormat.parse(lines[i]);
+		}
+		return games;
+	}
+}
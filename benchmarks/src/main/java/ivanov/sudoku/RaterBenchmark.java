@@ -0,0 +1,49 @@
+package ivanov.sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the human technique rater on the fixed puzzle sets. Every
+ * operation rates the whole set.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RaterBenchmark {
+	@Param({ PuzzleSets.EASY, PuzzleSets.HARD, PuzzleSets.SEVENTEEN,
+			PuzzleSets.PATHOLOGICAL })
+	public String set;
+
+	private Board[] games;
+	private DifficultyRater rater;
+
+	@Setup
+	public void setUp() {
+		this.games = PuzzleSets.get(this.set);
+		this.rater = new DifficultyRater();
+	}
+
+	@Benchmark
+	public void rate(Blackhole blackhole) {
+		for (Board game : this.games) {
+			blackhole.consume(this.rater.rate(game));
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package ivanov.sudoku;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the generation of a solved board, which does not depend on the
+ * difficulty. The random number generator is reseeded before every
+ * iteration, so every run generates the same sequence of solutions.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolutionBenchmark {
+	private static final long SEED = 20141103L;
+
+	private Random random;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		this.random = new Random(SEED);
+	}
+
+	@Benchmark
+	public Board generateSolution() {
+		return Game.generateSolution(this.random);
+	}
+}
@@ -0,0 +1,66 @@
+package ivanov.sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the solver backends on the fixed puzzle sets, see
+ * {@link UniquenessBenchmark} for the uniqueness check. Every operation
+ * processes the whole set.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+	@Param({ PuzzleSets.EASY, PuzzleSets.HARD, PuzzleSets.SEVENTEEN,
+			PuzzleSets.PATHOLOGICAL })
+	public String set;
+
+	@Param({ SolverFactory.BACKTRACKING, SolverFactory.DANCING_LINKS })
+	public String backend;
+
+	private Board[] games;
+	private Board[] work;
+	private Solver solver;
+
+	@Setup
+	public void setUp() {
+		this.games = PuzzleSets.get(this.set);
+		this.work = new Board[this.games.length];
+		for (int i = 0; i < this.games.length; i++) {
+			this.work[i] = new Board();
+		}
+		this.solver = SolverFactory.create(this.backend);
+	}
+
+	@Benchmark
+	public void countSolutions(Blackhole blackhole) {
+		for (Board game : this.games) {
+			blackhole.consume(this.solver.countSolutions(game, 2));
+		}
+	}
+
+	@Benchmark
+	public void solve(Blackhole blackhole) {
+		for (int i = 0; i < this.games.length; i++) {
+			this.work[i].copyFrom(this.games[i]);
+			blackhole.consume(this.solver.solve(this.work[i], null));
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package ivanov.sudoku;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures Game.isValid on the fixed puzzle sets. It uses the backend
+ * selected by the sudoku.solver property, e.g.
+ * <code>-jvmArgs -Dsudoku.solver=dlx</code>, so it declares no backend
+ * parameter. Every operation processes the whole set.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UniquenessBenchmark {
+	@Param({ PuzzleSets.EASY, PuzzleSets.HARD, PuzzleSets.SEVENTEEN,
+			PuzzleSets.PATHOLOGICAL })
+	public String set;
+
+	private Board[] games;
+
+	@Setup
+	public void setUp() {
+		this.games = PuzzleSets.get(this.set);
+	}
+
+	@Benchmark
+	public void isValid(Blackhole blackhole) {
+		for (Board game : this.games) {
+			blackhole.consume(Game.isValid(game));
+		}
+	}
+}